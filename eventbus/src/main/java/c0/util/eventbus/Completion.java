@@ -0,0 +1,69 @@
+package c0.util.eventbus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Future of one {@link EventBus#postAsync(c0.util.eventbus.events.Event)} call.
+ * Counts the deliveries still outstanding and completes when the last one is
+ * done, so tracking an event costs one counter instead of a future per
+ * subscriber. Starts with one pending delivery held by the posting thread until
+ * every subscriber has been handed the event.
+ */
+final class Completion extends CompletableFuture<Void> {
+
+	private static final AtomicIntegerFieldUpdater<Completion> PENDING = AtomicIntegerFieldUpdater
+			.newUpdater(Completion.class, "pending");
+
+	private final Class<?> eventType;
+	private volatile int pending = 1;
+	// Only created once a subscriber fails, guarded by this
+	private List<Exception> failures;
+
+	Completion(Class<?> eventType) {
+		this.eventType = eventType;
+	}
+
+	/**
+	 * Counts one more delivery to wait for
+	 */
+	void expect() {
+		PENDING.incrementAndGet(this);
+	}
+
+	/**
+	 * Marks one delivery as finished, failed if an exception is passed
+	 */
+	void done(Exception error) {
+		if (error != null) {
+			synchronized (this) {
+				if (failures == null) {
+					failures = new ArrayList<>(1);
+				}
+				failures.add(error);
+			}
+		}
+		if (PENDING.decrementAndGet(this) == 0) {
+			finish();
+		}
+	}
+
+	private void finish() {
+		List<Exception> failed;
+		synchronized (this) {
+			failed = failures;
+		}
+		if (failed == null) {
+			complete(null);
+			return;
+		}
+		RuntimeException failure = new RuntimeException(
+				failed.size() + " subscriber(s) failed to handle " + eventType.getName(), failed.get(0));
+		for (int i = 1; i < failed.size(); i++) {
+			failure.addSuppressed(failed.get(i));
+		}
+		completeExceptionally(failure);
+	}
+}
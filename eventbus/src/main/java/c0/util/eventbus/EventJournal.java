@@ -0,0 +1,559 @@
+package c0.util.eventbus;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import c0.util.eventbus.codec.CodecRegistry;
+import c0.util.eventbus.events.Event;
+
+/**
+ * Appends selected events posted on a bus to segmented, memory mapped log files,
+ * and replays them through the bus after a restart.
+ * <p>
+ * Each record holds the event's type id, a sequence number, the time it was
+ * appended, the event encoded by its codec and a checksum of all of them, so a
+ * record torn by a crash ends the journal instead of being replayed. Segments
+ * are named after the sequence of their first record and roll over when full.
+ * Every segment has an index with an entry every few kilobytes, used to seek by
+ * sequence or time without reading the whole journal.
+ * <p>
+ * Appending copies the event into the mapped segment on the posting thread and
+ * never waits for the disk. The mapped segments are forced to disk once per
+ * group commit window by a committer thread, so at most one window of events is
+ * lost on a crash. Segments that appending has moved on from are forced and
+ * unmapped by the committer as well. Only the segment being appended to stays
+ * mapped, older ones are mapped while they are replayed.
+ */
+public final class EventJournal implements AutoCloseable {
+
+	// Record: total length, CRC32C of the rest of the record, type id, sequence,
+	// append time in epoch millis, then the payload. A zero length marks the end
+	// of a segment
+	private static final int RECORD_HEADER = 28;
+	// Index: entry count, then entries of sequence, append time and offset
+	private static final int INDEX_HEADER = 8;
+	private static final int INDEX_ENTRY = 24;
+	private static final int INDEX_INTERVAL = 4096;
+	private static final int REPLAY_BATCH = 1024;
+	private static final Pattern SEGMENT_NAME = Pattern.compile("(\\d{20})\\.log");
+
+	private final EventBus bus;
+	private final CodecRegistry codecs;
+	private final Path directory;
+	private final int segmentSize;
+
+	private final List<Segment> segments = new CopyOnWriteArrayList<>();
+	private final Lock appendLock = new ReentrantLock();
+	private long nextSequence;
+	// Guarded by the append lock
+	private final CRC32C appendChecksum = new CRC32C();
+	private final ScheduledExecutorService committer;
+	// Segments appending has moved on from, forced and unmapped by the next flush
+	private final Queue<Segment> retired = new ConcurrentLinkedQueue<>();
+	// Held by flushes only, never by appends
+	private final Lock flushLock = new ReentrantLock();
+
+	// Batches being replayed by each running replay, so they are not appended
+	// again
+	private final List<Set<Event>> replaying = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Opens the journal in the directory, continuing after the last record of
+	 * existing segments
+	 *
+	 * @param segmentSize       size of each segment file in bytes
+	 * @param groupCommitWindow how often appended events are forced to disk, zero
+	 *                          to force them before every append returns
+	 */
+	public EventJournal(EventBus bus, CodecRegistry codecs, Path directory, int segmentSize, Duration groupCommitWindow)
+			throws IOException {
+		if (segmentSize < RECORD_HEADER * 2) {
+			throw new IllegalArgumentException("Segment size must be at least " + RECORD_HEADER * 2 + " bytes, was " + segmentSize);
+		}
+		this.bus = bus;
+		this.codecs = codecs;
+		this.directory = Files.createDirectories(directory);
+		this.segmentSize = segmentSize;
+
+		List<Long> firstSequences;
+		try (Stream<Path> files = Files.list(directory)) {
+			firstSequences = files.map(file -> SEGMENT_NAME.matcher(file.getFileName().toString()))
+					.filter(Matcher::matches).map(name -> Long.parseLong(name.group(1))).sorted().toList();
+		}
+		for (long firstSequence : firstSequences) {
+			segments.add(new Segment(directory, firstSequence));
+		}
+		if (segments.isEmpty()) {
+			segments.add(new Segment(directory, 0));
+		}
+		active().map(segmentSize);
+		nextSequence = active().recover();
+
+		if (groupCommitWindow.isZero()) {
+			committer = null;
+		} else {
+			committer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "eventbus-journal-commit");
+				thread.setDaemon(true);
+				return thread;
+			});
+			long windowNanos = groupCommitWindow.toNanos();
+			committer.scheduleWithFixedDelay(this::flush, windowNanos, windowNanos, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	/**
+	 * Appends every event of the type posted on the bus. The type needs a codec.
+	 */
+	public EventJournal journal(Class<? extends Event> eventType) {
+		if (!codecs.supports(eventType)) {
+			throw new IllegalArgumentException("No codec for " + eventType.getName());
+		}
+		List<SubscriberMethod> methods = new ArrayList<>();
+		methods.add(SubscriberMethod.builder("journal", eventType, (journal, event) -> append((Event) event)).build());
+		bus.register(this, methods);
+		return this;
+	}
+
+	/**
+	 * Appends the event types that a class declares with
+	 * {@link c0.util.eventbus.annotations.Posts} and
+	 * {@link c0.util.eventbus.annotations.ListensTo}
+	 */
+	public EventJournal journalDeclared(Class<?> declaringClass) {
+		for (Class<? extends Event> eventType : EventBus.declaredEventTypes(declaringClass)) {
+			journal(eventType);
+		}
+		return this;
+	}
+
+	/**
+	 * Sequence number the next appended event gets
+	 */
+	public long getNextSequence() {
+		appendLock.lock();
+		try {
+			return nextSequence;
+		} finally {
+			appendLock.unlock();
+		}
+	}
+
+	/**
+	 * Appends the event and returns its sequence number
+	 */
+	public long append(Event event) {
+		for (Set<Event> batch : replaying) {
+			if (batch.contains(event)) {
+				return -1;
+			}
+		}
+		int typeId = codecs.typeIdOf(event.getClass());
+		appendLock.lock();
+		try {
+			Segment segment = active();
+			if (!segment.append(codecs, event, typeId, nextSequence, appendChecksum)) {
+				if (committer == null) {
+					// Every append was forced already
+					segment.unmap();
+				} else {
+					retired.add(segment);
+				}
+				segment = new Segment(directory, nextSequence);
+				segment.map(segmentSize);
+				segments.add(segment);
+				if (!segment.append(codecs, event, typeId, nextSequence, appendChecksum)) {
+					throw new IllegalArgumentException(
+							event.getClass().getName() + " does not fit into a journal segment of " + segmentSize + " bytes");
+				}
+			}
+			segment.dirty = true;
+			if (committer == null) {
+				segment.force();
+			}
+			return nextSequence++;
+		} finally {
+			appendLock.unlock();
+		}
+	}
+
+	/**
+	 * Forces every appended event to disk now instead of at the end of the group
+	 * commit window
+	 */
+	public void flush() {
+		flushLock.lock();
+		try {
+			Segment segment;
+			while ((segment = retired.poll()) != null) {
+				segment.unmap();
+			}
+			segment = active();
+			if (segment.dirty) {
+				segment.dirty = false;
+				segment.force();
+			}
+		} finally {
+			flushLock.unlock();
+		}
+	}
+
+	/**
+	 * Posts every journaled event from the sequence on, in journal order, in
+	 * batches through {@link EventBus#postAll(java.util.Collection)}. Replayed
+	 * events are not appended again, also while other replays run. Events appended
+	 * while replaying are not included.
+	 *
+	 * @return the number of replayed events
+	 */
+	public long replay(long fromSequence) {
+		return replay(Segment.SEQUENCE, fromSequence);
+	}
+
+	/**
+	 * Posts every event journaled at or after the time, in epoch milliseconds
+	 *
+	 * @see #replay(long)
+	 */
+	public long replaySince(long timestampMillis) {
+		return replay(Segment.TIMESTAMP, timestampMillis);
+	}
+
+	private long replay(int field, long from) {
+		long end = getNextSequence();
+		if (end == 0 || (field == Segment.SEQUENCE && from >= end)) {
+			return 0;
+		}
+		List<Segment> snapshot = List.copyOf(segments);
+
+		// Last segment that starts at or before the position, found without mapping
+		// the segments
+		int first = 0;
+		for (int i = 1; i < snapshot.size(); i++) {
+			if (snapshot.get(i).firstKey(field) <= from) {
+				first = i;
+			}
+		}
+
+		long replayed = 0;
+		List<Event> batch = new ArrayList<>(REPLAY_BATCH);
+		CRC32C checksum = new CRC32C();
+		// Stops at the last record appended before the replay started, records after
+		// it may still be half written
+		long sequence = -1;
+		for (int i = first; i < snapshot.size() && sequence < end - 1; i++) {
+			Segment segment = snapshot.get(i);
+			// Mapped for this replay only, unless it is the segment being appended to
+			ByteBuffer data = segment.data();
+			int offset = i == first ? Segment.seek(segment.index(), field, from) : 0;
+			long expected = -1;
+			while (sequence < end - 1 && Segment.isRecord(data, offset, checksum)) {
+				int length = data.getInt(offset);
+				sequence = data.getLong(offset + 12);
+				// A valid record out of sequence was left behind by an earlier run
+				if (expected >= 0 && sequence != expected) {
+					break;
+				}
+				expected = sequence + 1;
+				long key = field == Segment.SEQUENCE ? sequence : data.getLong(offset + 20);
+				if (key >= from) {
+					batch.add(codecs.decode(data.getInt(offset + 8),
+							data.slice(offset + RECORD_HEADER, length - RECORD_HEADER)));
+					if (batch.size() == REPLAY_BATCH) {
+						replayed += post(batch);
+					}
+				}
+				offset += length;
+			}
+		}
+		replayed += post(batch);
+		return replayed;
+	}
+
+	private int post(List<Event> batch) {
+		int size = batch.size();
+		if (size == 0) {
+			return 0;
+		}
+		Set<Event> events = Collections.newSetFromMap(new IdentityHashMap<>(size * 2));
+		events.addAll(batch);
+		replaying.add(events);
+		try {
+			bus.postAll(batch);
+		} finally {
+			replaying.remove(events);
+			batch.clear();
+		}
+		return size;
+	}
+
+	private Segment active() {
+		return segments.get(segments.size() - 1);
+	}
+
+	/**
+	 * Stops journaling and forces all appended events to disk
+	 */
+	@Override
+	public void close() {
+		bus.unregister(this);
+		if (committer != null) {
+			committer.shutdown();
+		}
+		appendLock.lock();
+		try {
+			flush();
+		} finally {
+			appendLock.unlock();
+		}
+	}
+
+	/**
+	 * One log file and its index. The segment being appended to has both mapped
+	 * in full, older segments are only mapped while they are read.
+	 */
+	private static final class Segment {
+		private static final int SEQUENCE = 0;
+		private static final int TIMESTAMP = 8;
+
+		private final long firstSequence;
+		private final Path logFile;
+		private final Path indexFile;
+		// Null once appending has moved on to the next segment
+		private volatile MappedByteBuffer data;
+		private volatile MappedByteBuffer index;
+		private int position;
+		private int lastIndexed = -INDEX_INTERVAL;
+		private volatile boolean dirty;
+		// Time of the first record, read once it exists
+		private long firstTimestamp = -1;
+
+		private Segment(Path directory, long firstSequence) {
+			String name = String.format("%020d", firstSequence);
+			this.firstSequence = firstSequence;
+			this.logFile = directory.resolve(name + ".log");
+			this.indexFile = directory.resolve(name + ".index");
+		}
+
+		/**
+		 * Maps the files for appending, creating them if needed
+		 */
+		private void map(int segmentSize) throws UncheckedIOException {
+			try {
+				MappedByteBuffer mappedData = map(logFile, segmentSize, FileChannel.MapMode.READ_WRITE);
+				index = map(indexFile, INDEX_HEADER + (mappedData.capacity() / INDEX_INTERVAL + 1) * INDEX_ENTRY,
+						FileChannel.MapMode.READ_WRITE);
+				data = mappedData;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		/**
+		 * Forces the files to disk and drops the mappings, which are released once
+		 * no replay reads them anymore
+		 */
+		private void unmap() {
+			force();
+			data = null;
+			index = null;
+		}
+
+		// Existing files keep their size, so the segment size can change between runs
+		private static MappedByteBuffer map(Path file, int size, FileChannel.MapMode mode) throws IOException {
+			if (mode == FileChannel.MapMode.READ_ONLY) {
+				try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+					return channel.map(mode, 0, channel.size());
+				}
+			}
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+					StandardOpenOption.WRITE)) {
+				return channel.map(mode, 0, Math.max(size, channel.size()));
+			}
+		}
+
+		private ByteBuffer data() {
+			return mappedOrRead(data, logFile);
+		}
+
+		private ByteBuffer index() {
+			return mappedOrRead(index, indexFile);
+		}
+
+		private static ByteBuffer mappedOrRead(MappedByteBuffer mapped, Path file) {
+			if (mapped != null) {
+				return mapped;
+			}
+			try {
+				return map(file, 0, FileChannel.MapMode.READ_ONLY);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		/**
+		 * Sequence or time of the first record, read from the log file without
+		 * mapping it. Empty segments start at their first sequence and at no time
+		 * yet.
+		 */
+		private long firstKey(int field) {
+			if (field == SEQUENCE) {
+				return firstSequence;
+			}
+			if (firstTimestamp < 0) {
+				ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+				try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ)) {
+					channel.read(header, 0);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				if (header.position() < RECORD_HEADER || header.getInt(0) == 0) {
+					return Long.MAX_VALUE;
+				}
+				firstTimestamp = header.getLong(20);
+			}
+			return firstTimestamp;
+		}
+
+		/**
+		 * Finds the end of the records, starting from the last index entry, and
+		 * returns the sequence after the last one. The records end at the first one
+		 * that is torn or out of sequence, which the next append overwrites.
+		 */
+		private long recover() {
+			int entries = indexEntries(index);
+			long next = firstSequence;
+			if (entries > 0) {
+				position = index.getInt(INDEX_HEADER + (entries - 1) * INDEX_ENTRY + 16);
+				lastIndexed = position;
+				next = indexKey(index, entries - 1, SEQUENCE);
+			}
+			CRC32C checksum = new CRC32C();
+			while (isRecord(data, position, checksum) && data.getLong(position + 12) == next) {
+				next++;
+				position += data.getInt(position);
+			}
+			return next;
+		}
+
+		/**
+		 * Whether a complete record starts at the offset: its length fits into the
+		 * segment and its checksum matches
+		 */
+		private static boolean isRecord(ByteBuffer data, int offset, CRC32C checksum) {
+			if (offset + RECORD_HEADER > data.capacity()) {
+				return false;
+			}
+			int length = data.getInt(offset);
+			return length >= RECORD_HEADER && length <= data.capacity() - offset
+					&& data.getInt(offset + 4) == checksum(data, offset, length, checksum);
+		}
+
+		// CRC32C of everything in the record after the checksum
+		private static int checksum(ByteBuffer data, int offset, int length, CRC32C checksum) {
+			checksum.reset();
+			checksum.update(data.slice(offset + 8, length - 8));
+			return (int) checksum.getValue();
+		}
+
+		/**
+		 * Writes the record, or returns false if it does not fit into the rest of the
+		 * segment
+		 */
+		private boolean append(CodecRegistry codecs, Event event, int typeId, long sequence, CRC32C checksum) {
+			int size = data.capacity();
+			if (position + RECORD_HEADER > size) {
+				return false;
+			}
+			ByteBuffer payload = data.slice(position + RECORD_HEADER, size - position - RECORD_HEADER);
+			try {
+				codecs.encode(event, payload);
+			} catch (BufferOverflowException e) {
+				return false;
+			}
+			long timestamp = System.currentTimeMillis();
+			int length = RECORD_HEADER + payload.position();
+			data.putInt(position + 8, typeId);
+			data.putLong(position + 12, sequence);
+			data.putLong(position + 20, timestamp);
+			data.putInt(position + 4, checksum(data, position, length, checksum));
+			// Written last, a record only counts once its length is set
+			data.putInt(position, length);
+
+			if (position - lastIndexed >= INDEX_INTERVAL) {
+				int entries = indexEntries(index);
+				int entry = INDEX_HEADER + entries * INDEX_ENTRY;
+				index.putLong(entry, sequence);
+				index.putLong(entry + 8, timestamp);
+				index.putInt(entry + 16, position);
+				index.putInt(0, entries + 1);
+				lastIndexed = position;
+			}
+			position += length;
+			return true;
+		}
+
+		private static int indexEntries(ByteBuffer index) {
+			return index.getInt(0);
+		}
+
+		private static long indexKey(ByteBuffer index, int entry, int field) {
+			return index.getLong(INDEX_HEADER + entry * INDEX_ENTRY + field);
+		}
+
+		/**
+		 * Offset of the last indexed record whose sequence or time is before the
+		 * position, to start scanning from
+		 */
+		private static int seek(ByteBuffer index, int field, long from) {
+			int low = 0;
+			int high = indexEntries(index) - 1;
+			int found = -1;
+			while (low <= high) {
+				int middle = (low + high) >>> 1;
+				if (indexKey(index, middle, field) < from) {
+					found = middle;
+					low = middle + 1;
+				} else {
+					high = middle - 1;
+				}
+			}
+			return found < 0 ? 0 : index.getInt(INDEX_HEADER + found * INDEX_ENTRY + 16);
+		}
+
+		private void force() {
+			MappedByteBuffer mappedData = data;
+			MappedByteBuffer mappedIndex = index;
+			// Already forced if the files were unmapped
+			if (mappedData != null && mappedIndex != null) {
+				mappedData.force();
+				mappedIndex.force();
+			}
+		}
+	}
+}
@@ -0,0 +1,51 @@
+package c0.util.eventbus;
+
+import java.time.Duration;
+
+/**
+ * Settings for measuring subscriber deliveries, passed to
+ * {@link EventBus#enableInstrumentation(Instrumentation)}. Every subscriber then
+ * counts its invocations and errors and records its latencies in a
+ * {@link LatencyHistogram}, shown in {@link SubscriberStats}.
+ */
+public final class Instrumentation {
+
+	private final long slowThresholdNanos;
+	private final MetricsListener listener;
+	private final boolean jfrEvents;
+
+	/**
+	 * Only counts and records latencies
+	 */
+	public Instrumentation() {
+		this(null, null, false);
+	}
+
+	/**
+	 * @param slowThreshold deliveries taking at least this long are reported as
+	 *                      slow handlers, null to not report them
+	 * @param listener      receives every measurement, may be null. Without a
+	 *                      listener slow handlers are reported to standard error
+	 * @param jfrEvents     whether to emit a JDK Flight Recorder event per delivery
+	 */
+	public Instrumentation(Duration slowThreshold, MetricsListener listener, boolean jfrEvents) {
+		if (slowThreshold != null && slowThreshold.isNegative()) {
+			throw new IllegalArgumentException("Slow handler threshold must not be negative, was " + slowThreshold);
+		}
+		this.slowThresholdNanos = slowThreshold == null ? Long.MAX_VALUE : slowThreshold.toNanos();
+		this.listener = listener;
+		this.jfrEvents = jfrEvents;
+	}
+
+	long getSlowThresholdNanos() {
+		return slowThresholdNanos;
+	}
+
+	MetricsListener getListener() {
+		return listener;
+	}
+
+	boolean isJfrEvents() {
+		return jfrEvents;
+	}
+}
@@ -0,0 +1,11 @@
+package c0.util.eventbus;
+
+/**
+ * Functional interface that calls a subscriber method on its listener. An
+ * invoker is bound once per subscriber method when a listener is registered, so
+ * posting an event is a direct call instead of a reflective one.
+ */
+@FunctionalInterface
+public interface Invoker {
+	void invoke(Object listener, Object event) throws Exception;
+}
@@ -0,0 +1,92 @@
+package c0.util.eventbus;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Binds subscriber methods to {@link Invoker}s. Binding is attempted in order
+ * of speed:
+ * <ol>
+ * <li>a generated lambda class that calls the method directly (monomorphic and
+ * inlinable)</li>
+ * <li>a {@link MethodHandle}, for methods the lambda metafactory cannot
+ * target, for example static methods or classes in another module</li>
+ * <li>plain {@link Method#invoke}, if the method cannot be unreflected at
+ * all</li>
+ * </ol>
+ * Invokers are not cached here: {@link SubscriberMethodFinder} binds them once
+ * per listener class and keeps them on that class.
+ */
+final class Invokers {
+
+	private static final MethodType INVOKER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+	private Invokers() {
+	}
+
+	static Invoker bind(Method method) {
+		if (!Modifier.isStatic(method.getModifiers())) {
+			try {
+				return generate(method);
+			} catch (Throwable e) {
+				// Fall through to the next strategy
+			}
+		}
+		try {
+			return handle(method);
+		} catch (Throwable e) {
+			return reflective(method);
+		}
+	}
+
+	/**
+	 * Spins a lambda class implementing {@link Invoker} in the listener's own
+	 * lookup context, so the call site is a plain invokevirtual.
+	 */
+	private static Invoker generate(Method method) throws Throwable {
+		MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(method.getDeclaringClass(),
+				MethodHandles.lookup());
+		MethodHandle target = lookup.unreflect(method);
+		CallSite site = LambdaMetafactory.metafactory(lookup, "invoke", MethodType.methodType(Invoker.class),
+				INVOKER_TYPE, target, target.type().changeReturnType(void.class));
+		return (Invoker) site.getTarget().invokeExact();
+	}
+
+	private static Invoker handle(Method method) throws IllegalAccessException {
+		method.trySetAccessible();
+		MethodHandle target = MethodHandles.lookup().unreflect(method);
+		if (Modifier.isStatic(method.getModifiers())) {
+			target = MethodHandles.dropArguments(target, 0, Object.class);
+		}
+		MethodHandle handle = target.asType(INVOKER_TYPE);
+		return (listener, event) -> {
+			try {
+				handle.invokeExact(listener, event);
+			} catch (Exception | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new RuntimeException(e);
+			}
+		};
+	}
+
+	private static Invoker reflective(Method method) {
+		method.trySetAccessible();
+		return (listener, event) -> {
+			try {
+				method.invoke(listener, event);
+			} catch (InvocationTargetException e) {
+				if (e.getCause() instanceof Exception cause) {
+					throw cause;
+				}
+				throw e;
+			}
+		};
+	}
+}
@@ -0,0 +1,76 @@
+package c0.util.eventbus;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent histogram of latencies in nanoseconds. Buckets grow
+ * logarithmically with 16 linear steps each, so any recorded value is reported
+ * within about 6% of its real value, using a few kilobytes per histogram.
+ * Recording is a single atomic increment.
+ */
+public final class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKET_HALF = 1 << (SUB_BUCKET_BITS - 1);
+	// Values above about 18 minutes are recorded as 18 minutes
+	private static final long MAX_VALUE = (1L << 40) - 1;
+
+	private final AtomicLongArray counts = new AtomicLongArray(indexOf(MAX_VALUE) + 1);
+
+	public void record(long nanos) {
+		counts.incrementAndGet(indexOf(Math.min(Math.max(nanos, 0), MAX_VALUE)));
+	}
+
+	public long count() {
+		long total = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			total += counts.get(i);
+		}
+		return total;
+	}
+
+	/**
+	 * Latency in nanoseconds that the given percentage of recorded values are at
+	 * or below, for example 99.9 for the p999. Returns 0 if nothing was recorded.
+	 */
+	public long percentile(double percentile) {
+		long[] snapshot = new long[counts.length()];
+		long total = 0;
+		for (int i = 0; i < snapshot.length; i++) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * total));
+		long seen = 0;
+		for (int i = 0; i < snapshot.length; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				return valueOf(i);
+			}
+		}
+		return valueOf(snapshot.length - 1);
+	}
+
+	// Small values get a bucket each, larger ones share a bucket with the values
+	// that only differ below their top SUB_BUCKET_BITS bits
+	private static int indexOf(long value) {
+		if (value < 2 * SUB_BUCKET_HALF) {
+			return (int) value;
+		}
+		int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return shift * SUB_BUCKET_HALF + (int) (value >>> shift);
+	}
+
+	// Middle of the range of values counted in the bucket
+	private static long valueOf(int index) {
+		if (index < 2 * SUB_BUCKET_HALF) {
+			return index;
+		}
+		int shift = index / SUB_BUCKET_HALF - 1;
+		long lowest = (long) (index - shift * SUB_BUCKET_HALF) << shift;
+		return lowest + (1L << shift) / 2;
+	}
+}
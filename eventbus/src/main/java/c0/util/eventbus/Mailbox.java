@@ -0,0 +1,429 @@
+package c0.util.eventbus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import c0.util.eventbus.annotations.Subscribe.Overflow;
+import c0.util.eventbus.events.Event;
+import c0.util.eventbus.events.Keyed;
+
+/**
+ * Bounded queue of pending deliveries for one asynchronous subscriber. Events
+ * wait here until a task on the subscriber's executor takes them, so a slow
+ * subscriber can only hold on to as many events as its capacity, and what
+ * happens when it is full is decided by its {@link Overflow} policy.
+ * <p>
+ * Serial mailboxes run at most one drain task at a time, which delivers events
+ * in order. Concurrent mailboxes schedule one task per event, each taking the
+ * oldest pending event, so deliveries may overlap.
+ * <p>
+ * Batch mailboxes are drained like serial ones, but hand every event pending
+ * at that point to the subscriber as one list.
+ * <p>
+ * Conflating mailboxes keep at most one pending event per key. A new event
+ * takes the place of the pending one with the same key, keeping its position
+ * in the queue.
+ * <p>
+ * Subscribers called from a mailbox never wait for room in another one. They run
+ * on the executor that drains the mailboxes, so waiting there could hold every
+ * thread that would make room. A full {@link Overflow#BLOCK} mailbox fails their
+ * posts like {@link Overflow#FAIL} instead.
+ */
+final class Mailbox {
+
+	// Set while the current thread delivers events from a mailbox
+	private static final ThreadLocal<Boolean> delivering = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+	private final Event[] events;
+	// Whether the event in each slot was retained for the pool
+	private final boolean[] pooled;
+	// Completion waiting for the delivery in each slot, usually null
+	private final Completion[] completions;
+	private int head;
+	private int count;
+
+	// Key of the event in each slot and the slot of each pending key, only used
+	// when conflating
+	private final Object[] keys;
+	private final Map<Object, Integer> slotsByKey;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notFull = lock.newCondition();
+
+	private final Overflow overflow;
+	private final boolean serial;
+	private boolean draining;
+
+	private final Executor executor;
+	private final Handler handler;
+	// Created once so scheduling a delivery allocates nothing of its own
+	private final Runnable drainTask;
+
+	private final LongAdder dropped = new LongAdder();
+	private final LongAdder conflated = new LongAdder();
+
+	/**
+	 * @param handler receives each event, or a list of events for batch mailboxes
+	 */
+	Mailbox(int capacity, Overflow overflow, boolean serial, boolean conflate, boolean batch, Executor executor,
+			Handler handler) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Mailbox capacity must be at least 1, got " + capacity);
+		}
+		this.events = new Event[capacity];
+		this.pooled = new boolean[capacity];
+		this.completions = new Completion[capacity];
+		this.keys = conflate ? new Object[capacity] : null;
+		this.slotsByKey = conflate ? new HashMap<>() : null;
+		this.overflow = overflow;
+		this.serial = serial || batch;
+		this.executor = executor;
+		this.handler = handler;
+		this.drainTask = batch ? this::drainBatches : serial ? this::drainAll : this::drainOne;
+	}
+
+	/**
+	 * Queues the event for delivery, applying the overflow policy if the mailbox is
+	 * full. Pooled events are retained while queued. The completion, if any, is
+	 * marked done once the event is delivered, or right away if it is dropped or
+	 * replaced.
+	 * 
+	 * @throws FullException              if the mailbox is full and its policy
+	 *                                     is {@link Overflow#FAIL}, or
+	 *                                     {@link Overflow#BLOCK} while the
+	 *                                     calling thread delivers from a mailbox
+	 * @throws RejectedExecutionException if the executor rejects the delivery and
+	 *                                     no completion tracks it
+	 */
+	void offer(Event event, boolean pooledEvent, Completion completion) {
+		Event evicted = null;
+		boolean evictedPooled = false;
+		Completion evictedCompletion = null;
+		// Set when the new event itself is not queued
+		Completion discarded = null;
+		boolean schedule;
+
+		// Conflating subscribers only receive keyed events
+		Object key = slotsByKey == null ? null : ((Keyed) event).getKey();
+
+		lock.lock();
+		try {
+			if (key != null) {
+				Integer slot = slotsByKey.get(key);
+				if (slot != null) {
+					// Replace the pending event in place, its drain task is already scheduled
+					evicted = events[slot];
+					evictedPooled = pooled[slot];
+					evictedCompletion = completions[slot];
+					if (pooledEvent) {
+						event.retain();
+					}
+					events[slot] = event;
+					pooled[slot] = pooledEvent;
+					completions[slot] = completion;
+					conflated.increment();
+					return;
+				}
+			}
+
+			if (count == events.length) {
+				switch (overflow) {
+					case BLOCK -> {
+						if (delivering.get()) {
+							dropped.increment();
+							throw new FullException(events.length);
+						}
+						try {
+							while (count == events.length) {
+								notFull.await();
+							}
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							dropped.increment();
+							discarded = completion;
+							return;
+						}
+					}
+					case DROP_NEWEST -> {
+						dropped.increment();
+						discarded = completion;
+						return;
+					}
+					case DROP_OLDEST -> {
+						evicted = events[head];
+						evictedPooled = pooled[head];
+						evictedCompletion = completions[head];
+						removeHead();
+						dropped.increment();
+					}
+					case FAIL -> {
+						dropped.increment();
+						throw new FullException(events.length);
+					}
+				}
+			}
+
+			if (pooledEvent) {
+				event.retain();
+			}
+			int tail = (head + count) % events.length;
+			events[tail] = event;
+			pooled[tail] = pooledEvent;
+			completions[tail] = completion;
+			if (key != null) {
+				keys[tail] = key;
+				slotsByKey.put(key, tail);
+			}
+			count++;
+
+			schedule = !serial || !draining;
+			draining = true;
+		} finally {
+			lock.unlock();
+			if (evictedPooled) {
+				evicted.release();
+			}
+			if (evictedCompletion != null) {
+				evictedCompletion.done(null);
+			}
+			if (discarded != null) {
+				discarded.done(null);
+			}
+		}
+
+		if (schedule) {
+			try {
+				executor.execute(drainTask);
+			} catch (RejectedExecutionException e) {
+				abandon(e, completion);
+			}
+		}
+	}
+
+	/**
+	 * Takes back the events that lost their drain task because the executor
+	 * rejected it, usually after the bus was shut down. A serial mailbox has no
+	 * drain running, so nothing pending would ever be delivered and all of it is
+	 * taken back. A concurrent mailbox is one task short, so it takes back one
+	 * event. Taken back events are released and their completions fail.
+	 * 
+	 * @throws RejectedExecutionException if the offering post is not tracked by a
+	 *                                    completion, which would otherwise not learn
+	 *                                    of the failure
+	 */
+	private void abandon(RejectedExecutionException rejection, Completion completion) {
+		List<Event> pooledEvents = new ArrayList<>();
+		List<Completion> failed = new ArrayList<>();
+		lock.lock();
+		try {
+			int abandoned = serial ? count : Math.min(count, 1);
+			for (int i = 0; i < abandoned; i++) {
+				int tail = (head + count - 1) % events.length;
+				if (pooled[tail]) {
+					pooledEvents.add(events[tail]);
+				}
+				if (completions[tail] != null) {
+					failed.add(completions[tail]);
+				}
+				removeTail();
+			}
+			if (serial) {
+				draining = false;
+			}
+		} finally {
+			lock.unlock();
+		}
+		for (Event event : pooledEvents) {
+			event.release();
+		}
+		for (Completion abandonedCompletion : failed) {
+			abandonedCompletion.done(rejection);
+		}
+		if (completion == null) {
+			throw rejection;
+		}
+	}
+
+	int size() {
+		lock.lock();
+		try {
+			return count;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	int capacity() {
+		return events.length;
+	}
+
+	long dropped() {
+		return dropped.sum();
+	}
+
+	/**
+	 * Number of pending events replaced by a newer event with the same key
+	 */
+	long conflated() {
+		return conflated.sum();
+	}
+
+	private void drainOne() {
+		Event event;
+		boolean pooledEvent;
+		Completion completion;
+		lock.lock();
+		try {
+			// May already have been evicted by a newer event
+			if (count == 0) {
+				return;
+			}
+			event = events[head];
+			pooledEvent = pooled[head];
+			completion = completions[head];
+			removeHead();
+		} finally {
+			lock.unlock();
+		}
+		deliver(event, pooledEvent, completion);
+	}
+
+	private void drainAll() {
+		while (true) {
+			Event event;
+			boolean pooledEvent;
+			Completion completion;
+			lock.lock();
+			try {
+				if (count == 0) {
+					draining = false;
+					return;
+				}
+				event = events[head];
+				pooledEvent = pooled[head];
+				completion = completions[head];
+				removeHead();
+			} finally {
+				lock.unlock();
+			}
+			deliver(event, pooledEvent, completion);
+		}
+	}
+
+	private void drainBatches() {
+		while (true) {
+			List<Event> batch;
+			List<Event> pooledEvents = new ArrayList<>();
+			List<Completion> batchCompletions = new ArrayList<>();
+			lock.lock();
+			try {
+				if (count == 0) {
+					draining = false;
+					return;
+				}
+				batch = new ArrayList<>(count);
+				while (count > 0) {
+					batch.add(events[head]);
+					if (pooled[head]) {
+						pooledEvents.add(events[head]);
+					}
+					if (completions[head] != null) {
+						batchCompletions.add(completions[head]);
+					}
+					removeHead();
+				}
+			} finally {
+				lock.unlock();
+			}
+			Exception error = null;
+			Boolean outer = delivering.get();
+			delivering.set(Boolean.TRUE);
+			try {
+				error = handler.handle(Collections.unmodifiableList(batch));
+			} finally {
+				delivering.set(outer);
+				for (Event event : pooledEvents) {
+					event.release();
+				}
+				for (Completion completion : batchCompletions) {
+					completion.done(error);
+				}
+			}
+		}
+	}
+
+	private void deliver(Event event, boolean pooledEvent, Completion completion) {
+		Exception error = null;
+		Boolean outer = delivering.get();
+		delivering.set(Boolean.TRUE);
+		try {
+			error = handler.handle(event);
+		} finally {
+			delivering.set(outer);
+			if (pooledEvent) {
+				event.release();
+			}
+			if (completion != null) {
+				completion.done(error);
+			}
+		}
+	}
+
+	// Must hold the lock
+	private void removeHead() {
+		if (keys != null) {
+			slotsByKey.remove(keys[head]);
+			keys[head] = null;
+		}
+		events[head] = null;
+		completions[head] = null;
+		head = (head + 1) % events.length;
+		count--;
+		notFull.signal();
+	}
+
+	// Must hold the lock
+	private void removeTail() {
+		int tail = (head + count - 1) % events.length;
+		if (keys != null) {
+			slotsByKey.remove(keys[tail]);
+			keys[tail] = null;
+		}
+		events[tail] = null;
+		completions[tail] = null;
+		count--;
+		notFull.signal();
+	}
+
+	/**
+	 * Thrown to the posting thread when a mailbox with the {@link Overflow#FAIL}
+	 * policy is full, or one with {@link Overflow#BLOCK} when the posting thread
+	 * may not wait
+	 */
+	static final class FullException extends IllegalStateException {
+		private static final long serialVersionUID = 1L;
+
+		FullException(int capacity) {
+			super("Mailbox full, " + capacity + " events pending");
+		}
+	}
+
+	/**
+	 * Delivers drained events to the subscriber
+	 */
+	@FunctionalInterface
+	interface Handler {
+		/**
+		 * @return the exception the subscriber threw, or null if it succeeded
+		 */
+		Exception handle(Object event);
+	}
+}
@@ -0,0 +1,25 @@
+package c0.util.eventbus;
+
+/**
+ * Receives measurements of subscriber deliveries while instrumentation is
+ * enabled on a bus, for example to export them to a monitoring system. Called
+ * on the thread that ran the subscriber, so implementations should be fast and
+ * thread safe.
+ */
+public interface MetricsListener {
+
+	/**
+	 * Called after every delivery to a subscriber
+	 * 
+	 * @param error the exception thrown by the subscriber, or null if it succeeded
+	 */
+	default void onInvocation(Object listener, SubscriberMethod method, long durationNanos, Exception error) {
+	}
+
+	/**
+	 * Called when a delivery took at least the slow handler threshold. The event
+	 * is a list of events for batch subscribers.
+	 */
+	default void onSlowHandler(Object listener, SubscriberMethod method, Object event, long durationNanos) {
+	}
+}
@@ -0,0 +1,307 @@
+package c0.util.eventbus;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import c0.util.eventbus.annotations.Subscribe.Overflow;
+import c0.util.eventbus.annotations.Subscribe.ThreadMode;
+import c0.util.eventbus.codec.CodecRegistry;
+import c0.util.eventbus.codec.EventCodec;
+import c0.util.eventbus.events.Event;
+import c0.util.eventbus.remote.Transport;
+
+/**
+ * Forwards selected events posted on the local bus to peer nodes and posts the
+ * events received from peers on the local bus.
+ * <p>
+ * Forwarded events are queued like those of a serial batch subscriber, so
+ * posting only enqueues them. Every drained batch is encoded once into a frame
+ * and sent to each peer. Each event carries the id of the node it was posted on
+ * and a sequence number, which receivers use to drop events that come back to
+ * their origin or arrive more than once. Events received from peers are posted
+ * locally but not forwarded again, so nodes are expected to be fully connected.
+ */
+public final class RemoteForwarder implements AutoCloseable {
+
+	private static final int INITIAL_FRAME_SIZE = 64 * 1024;
+	// Record: sequence, type id and payload length, then the payload
+	private static final int RECORD_HEADER = 16;
+
+	private final EventBus bus;
+	private final CodecRegistry codecs;
+	private final Transport transport;
+	private final String nodeId;
+	// Tells receivers that sequences restarted when this node restarts
+	private final long incarnation = System.currentTimeMillis();
+	private final int queueCapacity;
+	private final Set<String> peers = new CopyOnWriteArraySet<>();
+	private final Set<Class<?>> forwarded = ConcurrentHashMap.newKeySet();
+
+	// Frames are built and sent one at a time, batches of different types may be
+	// drained concurrently
+	private final Lock sendLock = new ReentrantLock();
+	private ByteBuffer frame = ByteBuffer.allocate(INITIAL_FRAME_SIZE);
+	private long nextSequence;
+
+	// Received events posted locally that are still waiting in the outbound
+	// queue, so they are not sent back out
+	private final Set<Event> received = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+	private final Map<String, SeenWindow> seenByOrigin = new ConcurrentHashMap<>();
+	private final LongAdder duplicates = new LongAdder();
+
+	/**
+	 * @param nodeId        id of this node, unique among its peers
+	 * @param queueCapacity number of events per forwarded type that may wait to be
+	 *                      sent before posting blocks
+	 */
+	public RemoteForwarder(EventBus bus, CodecRegistry codecs, Transport transport, String nodeId, int queueCapacity) {
+		this.bus = bus;
+		this.codecs = codecs;
+		this.transport = transport;
+		this.nodeId = nodeId;
+		this.queueCapacity = queueCapacity;
+		transport.bind(this::receive);
+	}
+
+	public RemoteForwarder addPeer(String peer) {
+		if (peer.equals(nodeId)) {
+			throw new IllegalArgumentException("Node " + nodeId + " cannot be its own peer");
+		}
+		peers.add(peer);
+		return this;
+	}
+
+	public void removePeer(String peer) {
+		peers.remove(peer);
+	}
+
+	/**
+	 * Forwards every event of the type posted on the local bus to all peers. The
+	 * type needs a codec.
+	 */
+	public RemoteForwarder forward(Class<? extends Event> eventType) {
+		if (!codecs.supports(eventType)) {
+			throw new IllegalArgumentException("No codec for " + eventType.getName());
+		}
+		if (!forwarded.add(eventType)) {
+			return this;
+		}
+		List<SubscriberMethod> methods = new ArrayList<>();
+		methods.add(SubscriberMethod.builder("forward", eventType, (forwarder, events) -> send(events))
+				.threadMode(ThreadMode.SERIAL).queueCapacity(queueCapacity).overflow(Overflow.BLOCK).batch(true).build());
+		bus.register(this, methods);
+		return this;
+	}
+
+	/**
+	 * Forwards the event types that a class declares with
+	 * {@link c0.util.eventbus.annotations.Posts} and
+	 * {@link c0.util.eventbus.annotations.ListensTo}
+	 */
+	public RemoteForwarder forwardDeclared(Class<?> declaringClass) {
+		for (Class<? extends Event> eventType : EventBus.declaredEventTypes(declaringClass)) {
+			forward(eventType);
+		}
+		return this;
+	}
+
+	/**
+	 * Number of received events dropped because they were seen before or
+	 * originated on this node
+	 */
+	public long getDuplicateCount() {
+		return duplicates.sum();
+	}
+
+	// Frame: origin node id, its incarnation and the record count, then the
+	// records
+	private void send(Object batch) {
+		List<?> events = (List<?>) batch;
+		sendLock.lock();
+		try {
+			int count = 0;
+			startFrame();
+			for (Object element : events) {
+				Event event = (Event) element;
+				// Subclasses of a forwarded type are only sent if they have a codec
+				if (received.remove(event) || !codecs.supports(event.getClass())) {
+					continue;
+				}
+				int start = frame.position();
+				try {
+					encode(event);
+					count++;
+				} catch (BufferOverflowException e) {
+					frame.position(start);
+					if (count > 0) {
+						flushFrame(count);
+						count = 0;
+					} else {
+						frame = ByteBuffer.allocate(frame.capacity() * 2);
+					}
+					startFrame();
+					// Retried into the emptied or larger frame
+					encodeGrowing(event);
+					count++;
+				}
+			}
+			if (count > 0) {
+				flushFrame(count);
+			}
+		} finally {
+			sendLock.unlock();
+		}
+	}
+
+	private void startFrame() {
+		frame.clear();
+		EventCodec.putString(frame, nodeId);
+		frame.putLong(incarnation);
+		frame.putInt(0);
+	}
+
+	private void encode(Event event) {
+		int start = frame.position();
+		frame.position(start + RECORD_HEADER);
+		codecs.encode(event, frame);
+		frame.putLong(start, nextSequence);
+		frame.putInt(start + 8, codecs.typeIdOf(event.getClass()));
+		frame.putInt(start + 12, frame.position() - start - RECORD_HEADER);
+		nextSequence++;
+	}
+
+	private void encodeGrowing(Event event) {
+		while (true) {
+			int start = frame.position();
+			try {
+				encode(event);
+				return;
+			} catch (BufferOverflowException e) {
+				frame.position(start);
+				ByteBuffer larger = ByteBuffer.allocate(frame.capacity() * 2);
+				larger.put(frame.flip());
+				frame = larger;
+			}
+		}
+	}
+
+	private void flushFrame(int count) {
+		frame.putInt(4 + frame.getInt(0) + 8, count);
+		frame.flip();
+		for (String peer : peers) {
+			try {
+				transport.send(peer, frame.duplicate());
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private void receive(String peer, ByteBuffer frame) {
+		String origin = EventCodec.getString(frame);
+		long originIncarnation = frame.getLong();
+		int count = frame.getInt();
+		if (nodeId.equals(origin)) {
+			duplicates.add(count);
+			return;
+		}
+		SeenWindow seen = seenByOrigin.compute(origin,
+				(k, window) -> window == null || window.incarnation != originIncarnation ? new SeenWindow(originIncarnation)
+						: window);
+		for (int i = 0; i < count; i++) {
+			long sequence = frame.getLong();
+			int typeId = frame.getInt();
+			int length = frame.getInt();
+			ByteBuffer payload = frame.slice(frame.position(), length);
+			frame.position(frame.position() + length);
+			if (!seen.firstTime(sequence)) {
+				duplicates.increment();
+				continue;
+			}
+			try {
+				Event event = codecs.decode(typeId, payload);
+				boolean tracked = isForwarded(event.getClass()) && received.add(event);
+				boolean posted = false;
+				try {
+					bus.post(event);
+					posted = true;
+				} finally {
+					// The outbound queue may never see the event to take it out again
+					if (tracked && !posted) {
+						received.remove(event);
+					}
+				}
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private boolean isForwarded(Class<?> eventType) {
+		for (Class<?> forwardedType : forwarded) {
+			if (forwardedType.isAssignableFrom(eventType)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Stops forwarding and receiving. Events still queued are not sent.
+	 */
+	@Override
+	public void close() {
+		bus.unregister(this);
+		transport.bind((peer, frame) -> {
+		});
+		received.clear();
+	}
+
+	/**
+	 * Sequences recently received from one incarnation of an origin. Sequences
+	 * older than the window are treated as duplicates.
+	 */
+	private static final class SeenWindow {
+		private static final int SIZE = 4096;
+
+		private final long incarnation;
+		private final BitSet seen = new BitSet(SIZE);
+		private long highest = -1;
+
+		private SeenWindow(long incarnation) {
+			this.incarnation = incarnation;
+		}
+
+		synchronized boolean firstTime(long sequence) {
+			if (sequence > highest) {
+				for (long cleared = Math.max(highest + 1, sequence - SIZE + 1); cleared < sequence; cleared++) {
+					seen.clear((int) (cleared % SIZE));
+				}
+				seen.set((int) (sequence % SIZE));
+				highest = sequence;
+				return true;
+			}
+			if (sequence <= highest - SIZE) {
+				return false;
+			}
+			int bit = (int) (sequence % SIZE);
+			if (seen.get(bit)) {
+				return false;
+			}
+			seen.set(bit);
+			return true;
+		}
+	}
+}
@@ -0,0 +1,229 @@
+package c0.util.eventbus;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import c0.util.eventbus.events.Event;
+
+/**
+ * Preallocated, power-of-two sized ring of events that publishers claim slots
+ * in by sequence number and consumer threads drain in batches, similar to a
+ * Disruptor. Every slot carries its own sequence, so publishers and consumers
+ * only contend on the slots they touch and nothing is allocated per event.
+ * <p>
+ * With a single consumer, events are delivered in the order their slots were
+ * claimed. With more consumers, batches are delivered in parallel and only the
+ * order within a batch is kept.
+ */
+final class RingBuffer {
+
+	private static final int MAX_BATCH = 256;
+
+	private final Event[] events;
+	// Whether the event in each slot came from the object pool
+	private final boolean[] pooled;
+	// Completion waiting for the event in each slot, usually null
+	private final Completion[] completions;
+	// Sequence of each slot. Equal to the position a publisher may claim, or one
+	// past it once the slot is published and ready to consume
+	private final AtomicLongArray sequences;
+	private final int mask;
+
+	private final Sequence publishCursor = new Sequence();
+	private final Sequence consumeCursor = new Sequence();
+	// Publishers that got past the running check and have not published yet.
+	// Consumers only stop once this is zero, so no claimed slot is abandoned
+	private final Sequence publishing = new Sequence();
+
+	private final WaitStrategy waitStrategy;
+	private final Handler handler;
+	private final Thread[] consumers;
+	private volatile boolean running = true;
+
+	RingBuffer(int capacity, int consumerCount, WaitStrategy waitStrategy, Handler handler,
+			ThreadFactory threadFactory) {
+		if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("Ring buffer capacity must be a power of two, got " + capacity);
+		}
+		if (consumerCount < 1) {
+			throw new IllegalArgumentException("Ring buffer needs at least one consumer thread");
+		}
+		this.events = new Event[capacity];
+		this.pooled = new boolean[capacity];
+		this.completions = new Completion[capacity];
+		this.sequences = new AtomicLongArray(capacity);
+		for (int i = 0; i < capacity; i++) {
+			sequences.set(i, i);
+		}
+		this.mask = capacity - 1;
+		this.waitStrategy = waitStrategy;
+		this.handler = handler;
+
+		this.consumers = new Thread[consumerCount];
+		for (int i = 0; i < consumerCount; i++) {
+			consumers[i] = threadFactory.newThread(this::consume);
+			consumers[i].start();
+		}
+	}
+
+	/**
+	 * Claims the next slot and publishes the event into it. Waits with the wait
+	 * strategy while the ring is full. Pooled events must already be retained and
+	 * are released by the handler, which also marks the completion done.
+	 * 
+	 * @throws IllegalStateException if the ring is shut down, also while waiting
+	 *                               for a free slot
+	 */
+	void publish(Event event, boolean pooledEvent, Completion completion) {
+		publishing.getAndAdd(1);
+		try {
+			if (!running) {
+				throw new IllegalStateException("Ring buffer has been shut down");
+			}
+			claimAndPublish(event, pooledEvent, completion);
+		} finally {
+			publishing.getAndAdd(-1);
+		}
+	}
+
+	private void claimAndPublish(Event event, boolean pooledEvent, Completion completion) {
+		long position;
+		int index;
+		int attempt = 0;
+		while (true) {
+			position = publishCursor.get();
+			index = (int) position & mask;
+			long available = sequences.get(index) - position;
+			if (available == 0) {
+				if (publishCursor.compareAndSet(position, position + 1)) {
+					break;
+				}
+			} else if (available < 0) {
+				// Ring is full, the consumer has not freed this slot yet
+				if (!running) {
+					throw new IllegalStateException("Ring buffer has been shut down");
+				}
+				waitStrategy.idle(attempt);
+				attempt = WaitStrategy.nextAttempt(attempt);
+			}
+			// Otherwise another publisher claimed the position first, retry
+		}
+		events[index] = event;
+		pooled[index] = pooledEvent;
+		completions[index] = completion;
+		sequences.lazySet(index, position + 1);
+	}
+
+	private void consume() {
+		int attempt = 0;
+		while (running || publishing.get() != 0 || hasPending()) {
+			long position = consumeCursor.get();
+			int batch = 0;
+			while (batch < MAX_BATCH && sequences.get((int) (position + batch) & mask) == position + batch + 1) {
+				batch++;
+			}
+			if (batch == 0) {
+				waitStrategy.idle(attempt);
+				attempt = WaitStrategy.nextAttempt(attempt);
+				continue;
+			}
+			if (!consumeCursor.compareAndSet(position, position + batch)) {
+				continue;
+			}
+			attempt = 0;
+
+			for (int i = 0; i < batch; i++) {
+				long slotPosition = position + i;
+				int index = (int) slotPosition & mask;
+				Event event = events[index];
+				boolean pooledEvent = pooled[index];
+				Completion completion = completions[index];
+				events[index] = null;
+				completions[index] = null;
+				// Free the slot before dispatching so publishers are not held up by handlers
+				sequences.lazySet(index, slotPosition + events.length);
+				try {
+					handler.handle(event, pooledEvent, completion);
+				} catch (RuntimeException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	private boolean hasPending() {
+		long position = consumeCursor.get();
+		return sequences.get((int) position & mask) == position + 1;
+	}
+
+	/**
+	 * Stops the consumer threads once every event already published has been
+	 * delivered, and waits for them to finish. Publishers still waiting for a free
+	 * slot give up. When called from a handler, the calling consumer finishes its
+	 * batch after this returns.
+	 */
+	void shutdown() {
+		running = false;
+		for (Thread consumer : consumers) {
+			if (consumer == Thread.currentThread()) {
+				continue;
+			}
+			try {
+				consumer.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Receives the events drained by the consumer threads
+	 */
+	@FunctionalInterface
+	interface Handler {
+		void handle(Event event, boolean pooled, Completion completion);
+	}
+
+	/**
+	 * Cursor padded on both sides so publishers and consumers updating their own
+	 * cursor do not invalidate each other's cache line
+	 */
+	@SuppressWarnings("unused")
+	private static final class Sequence extends SequenceValue {
+		private long p9, p10, p11, p12, p13, p14, p15;
+	}
+
+	@SuppressWarnings("unused")
+	private static class SequenceValue extends SequencePadding {
+		private static final VarHandle VALUE;
+		static {
+			try {
+				VALUE = MethodHandles.lookup().findVarHandle(SequenceValue.class, "value", long.class);
+			} catch (ReflectiveOperationException e) {
+				throw new ExceptionInInitializerError(e);
+			}
+		}
+
+		private volatile long value;
+
+		long get() {
+			return value;
+		}
+
+		boolean compareAndSet(long expected, long updated) {
+			return VALUE.compareAndSet(this, expected, updated);
+		}
+
+		long getAndAdd(long delta) {
+			return (long) VALUE.getAndAdd(this, delta);
+		}
+	}
+
+	@SuppressWarnings("unused")
+	private static class SequencePadding {
+		private long p1, p2, p3, p4, p5, p6, p7;
+	}
+}
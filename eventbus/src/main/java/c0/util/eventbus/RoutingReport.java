@@ -0,0 +1,54 @@
+package c0.util.eventbus;
+
+import java.util.Map;
+import java.util.Set;
+
+import c0.util.eventbus.annotations.ListensTo;
+import c0.util.eventbus.annotations.Posts;
+
+/**
+ * Snapshot of the static routing graph of a bus, built from the {@link Posts}
+ * and {@link ListensTo} declarations of registered classes and the subscribers
+ * registered at the time. Meant for finding dead event traffic.
+ */
+public final class RoutingReport {
+
+	private final Map<Class<?>, Set<Class<?>>> routes;
+	private final Set<Class<?>> unroutedTypes;
+	private final Set<Class<?>> unusedTypes;
+
+	RoutingReport(Map<Class<?>, Set<Class<?>>> routes, Set<Class<?>> unroutedTypes, Set<Class<?>> unusedTypes) {
+		this.routes = routes;
+		this.unroutedTypes = unroutedTypes;
+		this.unusedTypes = unusedTypes;
+	}
+
+	/**
+	 * Every event type declared with {@link Posts}, mapped to the listener classes
+	 * whose subscribers currently receive it
+	 */
+	public Map<Class<?>, Set<Class<?>>> getRoutes() {
+		return routes;
+	}
+
+	/**
+	 * Event types declared with {@link Posts} that no registered subscriber
+	 * receives, so posting them does nothing
+	 */
+	public Set<Class<?>> getUnroutedTypes() {
+		return unroutedTypes;
+	}
+
+	/**
+	 * Event types that are subscribed to or declared with {@link ListensTo}, but
+	 * that no class declares to post, not even as a subtype
+	 */
+	public Set<Class<?>> getUnusedTypes() {
+		return unusedTypes;
+	}
+
+	@Override
+	public String toString() {
+		return "RoutingReport[routes=" + routes + ", unrouted=" + unroutedTypes + ", unused=" + unusedTypes + "]";
+	}
+}
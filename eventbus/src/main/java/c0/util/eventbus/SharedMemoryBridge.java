@@ -0,0 +1,290 @@
+package c0.util.eventbus;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import c0.util.eventbus.codec.CodecRegistry;
+import c0.util.eventbus.events.BaseEvent;
+import c0.util.eventbus.events.Event;
+
+/**
+ * Connects event buses of processes on the same host through memory mapped
+ * files. Forwarded events are encoded straight into a ring in the outbound file
+ * on the posting thread, and events read from the inbound file are decoded and
+ * posted on the local bus by a reader thread.
+ * <p>
+ * Each file is a single producer, single consumer ring, so two processes talking
+ * both ways use two files, each process writing the file the other reads. A
+ * full ring blocks posting threads until the other process catches up. Both
+ * processes have to register the forwarded types under the same ids in their
+ * {@link CodecRegistry}.
+ * <p>
+ * Every record carries the id of the bridge that first wrote the event. Events
+ * read from a file keep that origin in {@link BaseEvent#getOrigin()} and are
+ * forwarded with it again, so a process forwarding the same types back drops
+ * the echo of its own events when it reads them, whatever thread forwards them.
+ * Events that do not extend {@link BaseEvent} only keep their origin while the
+ * reader thread posts them, so they are only recognized when forwarded by
+ * subscribers on the posting thread.
+ */
+public final class SharedMemoryBridge implements AutoCloseable {
+
+	// Header: magic and capacity, then the write and read positions on their own
+	// cache lines. Records follow, each an int payload length, an int type id and
+	// the long origin id in front of the payload, padded to 16 bytes so even a
+	// padding record's header fits before the end of the ring
+	private static final int MAGIC = 0xC0EB0002;
+	private static final int WRITE_OFFSET = 64;
+	private static final int READ_OFFSET = 128;
+	private static final int DATA_OFFSET = 192;
+	private static final int RECORD_HEADER = 16;
+	// Type id of the filler record written when a record does not fit before the
+	// end of the ring
+	private static final int PADDING = -1;
+
+	// Event a reader thread is posting and its origin, for events that cannot
+	// carry the origin themselves
+	private static final ThreadLocal<Inbound> reposting = new ThreadLocal<>();
+
+	private static final VarHandle POSITION = MethodHandles.byteBufferViewVarHandle(long[].class,
+			ByteOrder.nativeOrder());
+
+	private final EventBus bus;
+	private final CodecRegistry codecs;
+	private final WaitStrategy waitStrategy;
+	private final int capacity;
+	private final MappedByteBuffer outbound;
+	private final MappedByteBuffer inbound;
+
+	private final Lock writeLock = new ReentrantLock();
+	private long writePosition;
+
+	// Written into the records of events first posted in this process, and used
+	// to recognize them when they come back. Never 0, which marks local events
+	private final long origin;
+	private final Thread reader;
+	private volatile boolean running = true;
+
+	/**
+	 * @param outboundFile file to write forwarded events to, null to only receive
+	 * @param inboundFile  file to read events from, null to only send
+	 * @param capacity     size of each ring in bytes, a power of two. Both
+	 *                     processes must use the same capacity
+	 */
+	public SharedMemoryBridge(EventBus bus, CodecRegistry codecs, Path outboundFile, Path inboundFile, int capacity,
+			WaitStrategy waitStrategy) throws IOException {
+		if (capacity < 64 || Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("Capacity must be a power of two of at least 64 bytes, was " + capacity);
+		}
+		this.bus = bus;
+		this.codecs = codecs;
+		this.waitStrategy = waitStrategy;
+		this.capacity = capacity;
+		long id;
+		do {
+			id = ThreadLocalRandom.current().nextLong();
+		} while (id == 0);
+		this.origin = id;
+		this.outbound = outboundFile == null ? null : map(outboundFile, capacity);
+		this.inbound = inboundFile == null ? null : map(inboundFile, capacity);
+		if (outbound != null) {
+			writePosition = (long) POSITION.getVolatile(outbound, WRITE_OFFSET);
+		}
+
+		if (inbound != null) {
+			reader = new Thread(this::read, "eventbus-bridge-" + inboundFile.getFileName());
+			reader.setDaemon(true);
+			reader.start();
+		} else {
+			reader = null;
+		}
+	}
+
+	private static MappedByteBuffer map(Path file, int capacity) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, DATA_OFFSET + capacity);
+			int magic = buffer.getInt(0);
+			if (magic == MAGIC && buffer.getInt(4) != capacity) {
+				throw new IllegalArgumentException(file + " holds a ring of " + buffer.getInt(4) + " bytes, not " + capacity);
+			} else if (magic != MAGIC && magic != 0) {
+				throw new IllegalArgumentException(file + " is not an event bridge file");
+			}
+			// Both processes may initialize a new file, they write the same values
+			buffer.putInt(4, capacity);
+			buffer.putInt(0, MAGIC);
+			return buffer;
+		}
+	}
+
+	/**
+	 * Forwards every event of the type posted on the local bus to the other
+	 * process. The type needs a codec, and subtypes without a codec of their own
+	 * are sent with the codec of their nearest registered supertype.
+	 */
+	public SharedMemoryBridge forward(Class<? extends Event> eventType) {
+		if (outbound == null) {
+			throw new IllegalStateException("Bridge has no outbound file");
+		}
+		if (!codecs.supports(eventType)) {
+			throw new IllegalArgumentException("No codec for " + eventType.getName());
+		}
+		List<SubscriberMethod> methods = new ArrayList<>();
+		methods.add(SubscriberMethod.builder("forward", eventType, (bridge, event) -> write((Event) event)).build());
+		bus.register(this, methods);
+		return this;
+	}
+
+	/**
+	 * Forwards the event types that a class declares with
+	 * {@link c0.util.eventbus.annotations.Posts} and
+	 * {@link c0.util.eventbus.annotations.ListensTo}, for example a publisher in
+	 * this process or a listener in the other one
+	 */
+	public SharedMemoryBridge forwardDeclared(Class<?> declaringClass) {
+		for (Class<? extends Event> eventType : EventBus.declaredEventTypes(declaringClass)) {
+			forward(eventType);
+		}
+		return this;
+	}
+
+	private void write(Event event) {
+		long recordOrigin = originOf(event);
+		int typeId = codecs.typeIdOf(event.getClass());
+		writeLock.lock();
+		try {
+			int attempt = 0;
+			while (true) {
+				long read = (long) POSITION.getAcquire(outbound, READ_OFFSET);
+				int free = (int) (capacity - (writePosition - read));
+				int offset = (int) (writePosition & (capacity - 1));
+				int contiguous = capacity - offset;
+				int limit = Math.min(free, contiguous);
+
+				if (limit > RECORD_HEADER) {
+					ByteBuffer payload = outbound.slice(DATA_OFFSET + offset + RECORD_HEADER, limit - RECORD_HEADER);
+					try {
+						codecs.encode(event, payload);
+						outbound.putInt(DATA_OFFSET + offset, payload.position());
+						outbound.putInt(DATA_OFFSET + offset + 4, typeId);
+						outbound.putLong(DATA_OFFSET + offset + 8, recordOrigin);
+						advance(align(RECORD_HEADER + payload.position()));
+						return;
+					} catch (BufferOverflowException e) {
+						// Fall through to wrap around or wait for the reader
+					}
+				}
+				if (contiguous < capacity && contiguous <= free) {
+					outbound.putInt(DATA_OFFSET + offset, contiguous - RECORD_HEADER);
+					outbound.putInt(DATA_OFFSET + offset + 4, PADDING);
+					advance(contiguous);
+				} else if (free == capacity) {
+					throw new IllegalArgumentException(
+							event.getClass().getName() + " does not fit into a bridge ring of " + capacity + " bytes");
+				} else {
+					waitStrategy.idle(attempt);
+					attempt = WaitStrategy.nextAttempt(attempt);
+				}
+			}
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	// Events read from a file keep the id of the bridge that first wrote them
+	private long originOf(Event event) {
+		if (event instanceof BaseEvent baseEvent && baseEvent.getOrigin() != 0) {
+			return baseEvent.getOrigin();
+		}
+		Inbound inbound = reposting.get();
+		return inbound != null && inbound.event() == event ? inbound.origin() : origin;
+	}
+
+	// Publishes the records written so far to the reading process
+	private void advance(int size) {
+		writePosition += size;
+		POSITION.setRelease(outbound, WRITE_OFFSET, writePosition);
+	}
+
+	private static int align(int size) {
+		return (size + RECORD_HEADER - 1) & -RECORD_HEADER;
+	}
+
+	private void read() {
+		long read = (long) POSITION.getVolatile(inbound, READ_OFFSET);
+		int attempt = 0;
+		while (running) {
+			long written = (long) POSITION.getAcquire(inbound, WRITE_OFFSET);
+			if (read == written) {
+				waitStrategy.idle(attempt);
+				attempt = WaitStrategy.nextAttempt(attempt);
+				continue;
+			}
+			attempt = 0;
+			while (read < written) {
+				int offset = (int) (read & (capacity - 1));
+				int length = inbound.getInt(DATA_OFFSET + offset);
+				int typeId = inbound.getInt(DATA_OFFSET + offset + 4);
+				long recordOrigin = inbound.getLong(DATA_OFFSET + offset + 8);
+				// Events that started here came back through the other process
+				if (typeId != PADDING && recordOrigin != origin) {
+					repost(typeId, recordOrigin, inbound.slice(DATA_OFFSET + offset + RECORD_HEADER, length));
+				}
+				read += align(RECORD_HEADER + length);
+			}
+			POSITION.setRelease(inbound, READ_OFFSET, read);
+		}
+	}
+
+	private void repost(int typeId, long recordOrigin, ByteBuffer payload) {
+		try {
+			Event event = codecs.decode(typeId, payload);
+			if (event instanceof BaseEvent baseEvent) {
+				baseEvent.setOrigin(recordOrigin);
+				bus.post(event);
+				return;
+			}
+			reposting.set(new Inbound(event, recordOrigin));
+			try {
+				bus.post(event);
+			} finally {
+				reposting.remove();
+			}
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private record Inbound(Event event, long origin) {
+	}
+
+	/**
+	 * Stops forwarding and reading. The files are left in place, so a new bridge
+	 * continues where this one stopped.
+	 */
+	@Override
+	public void close() {
+		bus.unregister(this);
+		running = false;
+		if (reader != null && reader != Thread.currentThread()) {
+			try {
+				reader.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
@@ -0,0 +1,223 @@
+package c0.util.eventbus;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import c0.util.eventbus.annotations.Subscribe.ThreadMode;
+import c0.util.eventbus.events.Event;
+import c0.util.eventbus.events.Keyed;
+
+/**
+ * Wrapper to allow to store method siganures as subscribers and order them by priority.
+ */
+final class Subscriber implements Comparable<Subscriber> {
+	private final Class<?> eventType;
+	private final Object listener;
+	private final Invoker invoker;
+	private final int priority;
+	private final ThreadMode threadMode;
+	private final Set<String> types;
+	private final boolean batch;
+
+	private final SubscriberMethod method;
+
+	// Pending deliveries, none when called on the posting thread and one per
+	// partition for partitioned subscribers
+	private final Mailbox[] mailboxes;
+	private volatile boolean active = true;
+	// Null while instrumentation is disabled, which keeps deliveries untimed
+	private volatile SubscriberMetrics metrics;
+
+	/**
+	 * @param executors executors that asynchronous deliveries run on, empty for
+	 *                  {@link ThreadMode#POSTING} and one per partition for
+	 *                  {@link ThreadMode#PARTITIONED}
+	 */
+	Subscriber(SubscriberMethod method, Object listener, Executor[] executors) {
+		this.method = method;
+		this.eventType = method.getEventType();
+		this.listener = listener;
+		this.invoker = method.getInvoker();
+		this.priority = method.getPriority();
+		this.threadMode = method.getThreadMode();
+		this.types = method.getTypes();
+		this.batch = method.isBatch();
+		boolean serial = threadMode == ThreadMode.SERIAL || threadMode == ThreadMode.PARTITIONED;
+		this.mailboxes = new Mailbox[executors.length];
+		for (int i = 0; i < executors.length; i++) {
+			mailboxes[i] = new Mailbox(method.getQueueCapacity(), method.getOverflow(), serial, method.isConflating(),
+					batch, executors[i], this::invokeSafely);
+		}
+	}
+
+	public SubscriberMethod getMethod() {
+		return method;
+	}
+
+	public Class<?> getEventType() {
+		return eventType;
+	}
+
+	public Object getListener() {
+		return listener;
+	}
+
+	public boolean isActive() {
+		return active;
+	}
+
+	public void deactivate() {
+		active = false;
+	}
+
+	public int getPriority() {
+		return priority;
+	}
+
+	public ThreadMode getThreadMode() {
+		return threadMode;
+	}
+
+	/**
+	 * Whether the subscriber only receives events of certain
+	 * {@link Event.Type}s
+	 */
+	public boolean isTypeFiltered() {
+		return !types.isEmpty();
+	}
+
+	/**
+	 * Whether the subscriber takes a list of events instead of a single one
+	 */
+	public boolean isBatch() {
+		return batch;
+	}
+
+	public boolean acceptsType(String typeName) {
+		return types.isEmpty() || (typeName != null && types.contains(typeName));
+	}
+
+	/**
+	 * Delivers the event according to the subscriber's {@link ThreadMode}, either
+	 * calling it right away or queueing it in its mailbox. Pooled events are
+	 * retained while queued, so they are not returned to the pool while still in
+	 * use. The completion, if not null, is marked done once the delivery has
+	 * finished. If the event cannot be queued, for example because the mailbox is
+	 * full, the completion fails instead of throwing, so the post still reaches
+	 * the remaining subscribers.
+	 */
+	public void dispatch(Event event, boolean pooled, Completion completion) {
+		if (mailboxes.length > 0) {
+			try {
+				mailboxFor(event).offer(event, pooled, completion);
+			} catch (RuntimeException e) {
+				// Not queued, for example because the mailbox is full. A tracked post fails
+				// its completion instead of the posting thread
+				if (completion == null) {
+					throw e;
+				}
+				completion.done(e);
+			}
+			return;
+		}
+		Exception error = invokeSafely(batch ? List.of(event) : event);
+		if (completion != null) {
+			completion.done(error);
+		}
+	}
+
+	/**
+	 * Delivers several events to a batch subscriber. Called on the posting thread
+	 * it receives them as one list, otherwise they are queued and it receives
+	 * whatever is pending when its mailbox is drained.
+	 */
+	public void dispatchBatch(List<Event> events, boolean pooled) {
+		if (events.isEmpty()) {
+			return;
+		}
+		if (mailboxes.length > 0) {
+			for (Event event : events) {
+				mailboxFor(event).offer(event, pooled, null);
+			}
+		} else {
+			invokeSafely(Collections.unmodifiableList(events));
+		}
+	}
+
+	/**
+	 * The subscriber's queues of pending deliveries, empty if it is called on the
+	 * posting thread
+	 */
+	public Mailbox[] getMailboxes() {
+		return mailboxes;
+	}
+
+	/**
+	 * Picks the mailbox by the event's key, so events with the same key always go
+	 * through the same partition and stay in order
+	 */
+	private Mailbox mailboxFor(Event event) {
+		if (mailboxes.length == 1) {
+			return mailboxes[0];
+		}
+		Object key = Keyed.keyOf(event);
+		int hash = key == null ? 0 : key.hashCode();
+		return mailboxes[Math.floorMod(hash ^ (hash >>> 16), mailboxes.length)];
+	}
+
+	public void invoke(Object event) throws Exception {
+		invoker.invoke(listener, event);
+	}
+
+	/**
+	 * Starts measuring deliveries with fresh counters, or stops if null
+	 */
+	void instrument(Instrumentation instrumentation) {
+		metrics = instrumentation == null ? null : new SubscriberMetrics(instrumentation);
+	}
+
+	/**
+	 * The subscriber's measurements, or null if instrumentation is disabled
+	 */
+	SubscriberMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Calls the subscriber, printing and returning what it throws
+	 */
+	private Exception invokeSafely(Object event) {
+		// Deliveries already handed off are dropped once the subscriber is removed
+		if (!active) {
+			return null;
+		}
+		SubscriberMetrics metrics = this.metrics;
+		if (metrics == null) {
+			try {
+				invoke(event);
+				return null;
+			} catch (Exception e) {
+				e.printStackTrace();
+				return e;
+			}
+		}
+
+		Exception error = null;
+		long start = System.nanoTime();
+		try {
+			invoke(event);
+		} catch (Exception e) {
+			error = e;
+			e.printStackTrace();
+		}
+		metrics.record(this, event, System.nanoTime() - start, error);
+		return error;
+	}
+
+	@Override
+	public int compareTo(Subscriber other) {
+		return Integer.compare(this.priority, other.priority);
+	}
+}
@@ -0,0 +1,15 @@
+package c0.util.eventbus;
+
+/**
+ * Subscriber methods of one listener class, generated at compile time by
+ * {@code c0.util.eventbus.processor.SubscriberIndexProcessor}. When an index
+ * exists for a listener's class, registering it needs no reflection at all.
+ * The index of a class is found by its name, the class's binary name followed by
+ * {@code $$SubscriberIndex}, in the class's own class loader.
+ */
+public interface SubscriberIndex {
+
+	Class<?> listenerClass();
+
+	SubscriberMethod[] subscriberMethods();
+}
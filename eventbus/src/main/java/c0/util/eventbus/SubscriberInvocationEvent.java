@@ -0,0 +1,52 @@
+package c0.util.eventbus;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JDK Flight Recorder event for one delivery to a subscriber
+ */
+@Name("c0.eventbus.SubscriberInvocation")
+@Label("Subscriber Invocation")
+@Category({ "c0", "EventBus" })
+@Description("Delivery of an event to a subscriber method")
+@StackTrace(false)
+final class SubscriberInvocationEvent extends jdk.jfr.Event {
+
+	@Label("Listener Class")
+	Class<?> listenerClass;
+
+	@Label("Method")
+	String method;
+
+	@Label("Event Type")
+	Class<?> eventType;
+
+	@Label("Thread Mode")
+	String threadMode;
+
+	@Label("Handler Duration")
+	@Timespan(Timespan.NANOSECONDS)
+	long handlerDuration;
+
+	@Label("Failed")
+	boolean failed;
+
+	static void emit(Subscriber subscriber, long durationNanos, Exception error) {
+		SubscriberInvocationEvent event = new SubscriberInvocationEvent();
+		if (!event.isEnabled()) {
+			return;
+		}
+		event.listenerClass = subscriber.getListener().getClass();
+		event.method = subscriber.getMethod().getName();
+		event.eventType = subscriber.getEventType();
+		event.threadMode = subscriber.getThreadMode().name();
+		event.handlerDuration = durationNanos;
+		event.failed = error != null;
+		event.commit();
+	}
+}
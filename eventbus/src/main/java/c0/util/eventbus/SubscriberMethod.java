@@ -0,0 +1,165 @@
+package c0.util.eventbus;
+
+import java.util.Set;
+
+import c0.util.eventbus.annotations.Subscribe;
+import c0.util.eventbus.annotations.Subscribe.Overflow;
+import c0.util.eventbus.annotations.Subscribe.ThreadMode;
+import c0.util.eventbus.events.Keyed;
+
+/**
+ * Description of one {@link Subscribe} method of a listener class, resolved once
+ * per class and shared by every registered instance of it. Built either by
+ * reflection or by a generated {@link SubscriberIndex}, through
+ * {@link #builder(String, Class, Invoker)}.
+ */
+public final class SubscriberMethod {
+
+	private final String name;
+	private final Class<?> eventType;
+	private final Invoker invoker;
+	private final int priority;
+	private final ThreadMode threadMode;
+	private final Set<String> types;
+	private final int queueCapacity;
+	private final Overflow overflow;
+	private final boolean conflate;
+	private final boolean batch;
+
+	private SubscriberMethod(Builder builder) {
+		this.name = builder.name;
+		this.eventType = builder.eventType;
+		this.invoker = builder.invoker;
+		this.priority = builder.priority;
+		this.threadMode = builder.threadMode;
+		this.types = Set.of(builder.types);
+		this.queueCapacity = builder.queueCapacity;
+		this.overflow = builder.overflow;
+		this.conflate = builder.conflate;
+		this.batch = builder.batch;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Class<?> getEventType() {
+		return eventType;
+	}
+
+	public Invoker getInvoker() {
+		return invoker;
+	}
+
+	public int getPriority() {
+		return priority;
+	}
+
+	public ThreadMode getThreadMode() {
+		return threadMode;
+	}
+
+	/**
+	 * Names of the event types the subscriber is limited to, empty if it receives
+	 * every event of its class
+	 */
+	public Set<String> getTypes() {
+		return types;
+	}
+
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	public Overflow getOverflow() {
+		return overflow;
+	}
+
+	public boolean isConflating() {
+		return conflate;
+	}
+
+	public boolean isBatch() {
+		return batch;
+	}
+
+	/**
+	 * Starts describing a subscriber method. Settings that are not set keep the
+	 * defaults of {@link Subscribe}.
+	 * 
+	 * @param eventType type of the events the subscriber receives, the element
+	 *                  type for batch subscribers
+	 */
+	public static Builder builder(String name, Class<?> eventType, Invoker invoker) {
+		return new Builder(name, eventType, invoker);
+	}
+
+	public static final class Builder {
+		private final String name;
+		private final Class<?> eventType;
+		private final Invoker invoker;
+		private int priority;
+		private ThreadMode threadMode = ThreadMode.POSTING;
+		private String[] types = new String[0];
+		private int queueCapacity = Subscribe.DEFAULT_QUEUE_CAPACITY;
+		private Overflow overflow = Overflow.BLOCK;
+		private boolean conflate;
+		private boolean batch;
+
+		private Builder(String name, Class<?> eventType, Invoker invoker) {
+			this.name = name;
+			this.eventType = eventType;
+			this.invoker = invoker;
+		}
+
+		public Builder priority(int priority) {
+			this.priority = priority;
+			return this;
+		}
+
+		public Builder threadMode(ThreadMode threadMode) {
+			this.threadMode = threadMode;
+			return this;
+		}
+
+		public Builder types(String... types) {
+			this.types = types;
+			return this;
+		}
+
+		public Builder queueCapacity(int queueCapacity) {
+			this.queueCapacity = queueCapacity;
+			return this;
+		}
+
+		public Builder overflow(Overflow overflow) {
+			this.overflow = overflow;
+			return this;
+		}
+
+		public Builder conflate(boolean conflate) {
+			this.conflate = conflate;
+			return this;
+		}
+
+		/**
+		 * Whether the method takes a {@code List} of events
+		 */
+		public Builder batch(boolean batch) {
+			this.batch = batch;
+			return this;
+		}
+
+		/**
+		 * @throws IllegalArgumentException if the subscriber conflates events that are
+		 *                                  not {@link Keyed}
+		 */
+		public SubscriberMethod build() {
+			if (conflate && !Keyed.class.isAssignableFrom(eventType)) {
+				throw new IllegalArgumentException("Event subscriber " + name + " conflates " + eventType.getName()
+						+ ", which does not implement " + Keyed.class.getName() + ".");
+			}
+			return new SubscriberMethod(this);
+		}
+	}
+}
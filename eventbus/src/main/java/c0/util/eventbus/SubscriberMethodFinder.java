@@ -0,0 +1,112 @@
+package c0.util.eventbus;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayList;
+import java.util.List;
+
+import c0.util.eventbus.annotations.Subscribe;
+import c0.util.eventbus.events.Event;
+
+/**
+ * Resolves the {@link SubscriberMethod}s of listener classes, once per class.
+ * Uses the generated {@link SubscriberIndex} of the class if there is one and
+ * falls back to scanning its methods reflectively otherwise.
+ */
+final class SubscriberMethodFinder {
+
+	// Name of the index generated next to a listener class, see
+	// c0.util.eventbus.processor.SubscriberIndexProcessor
+	private static final String INDEX_SUFFIX = "$$SubscriberIndex";
+
+	// Cached on the listener class itself, so nothing here keeps its class loader
+	// alive
+	private static final ClassValue<SubscriberMethod[]> methods = new ClassValue<>() {
+		@Override
+		protected SubscriberMethod[] computeValue(Class<?> listenerClass) {
+			SubscriberIndex index = loadIndex(listenerClass);
+			return index != null ? index.subscriberMethods() : scan(listenerClass);
+		}
+	};
+
+	private SubscriberMethodFinder() {
+	}
+
+	static SubscriberMethod[] find(Class<?> listenerClass) {
+		return methods.get(listenerClass);
+	}
+
+	/**
+	 * Loads the generated index of the listener class from the class's own loader,
+	 * or returns null if it has none
+	 */
+	private static SubscriberIndex loadIndex(Class<?> listenerClass) {
+		Class<?> indexClass;
+		try {
+			indexClass = Class.forName(listenerClass.getName() + INDEX_SUFFIX, true, listenerClass.getClassLoader());
+		} catch (ClassNotFoundException e) {
+			return null;
+		}
+		try {
+			SubscriberIndex index = (SubscriberIndex) indexClass.getConstructor().newInstance();
+			return index.listenerClass() == listenerClass ? index : null;
+		} catch (ReflectiveOperationException | ClassCastException e) {
+			// A broken index only costs the reflective fallback
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	private static SubscriberMethod[] scan(Class<?> listenerClass) {
+		List<SubscriberMethod> found = new ArrayList<>();
+		for (Method method : listenerClass.getMethods()) {
+			if (method.isAnnotationPresent(Subscribe.class)) {
+				if (method.getParameterCount() != 1) {
+					throw new IllegalArgumentException("Event subscriber " + method.getName()
+							+ " must have exactly one parameter for the event that will be passed to it.");
+				}
+
+				// Get the event type through the method parameter, or its element type for
+				// subscribers taking a list of events
+				Class<?> eventType = method.getParameterTypes()[0];
+				boolean batch = eventType == List.class;
+				if (batch) {
+					eventType = elementType(method.getGenericParameterTypes()[0]);
+				}
+				Subscribe annotation = method.getAnnotation(Subscribe.class);
+
+				found.add(SubscriberMethod.builder(method.getName(), eventType, Invokers.bind(method))
+						.priority(annotation.priority()).threadMode(annotation.threadMode()).types(annotation.types())
+						.queueCapacity(annotation.queueCapacity()).overflow(annotation.overflow())
+						.conflate(annotation.conflate()).batch(batch).build());
+			}
+		}
+		return found.toArray(new SubscriberMethod[0]);
+	}
+
+	/**
+	 * Resolves the element type of a {@code List} parameter, using the upper bound
+	 * of wildcards and type variables. Raw lists receive any {@link Event}.
+	 */
+	private static Class<?> elementType(Type listType) {
+		if (!(listType instanceof ParameterizedType parameterized)) {
+			return Event.class;
+		}
+		Type element = parameterized.getActualTypeArguments()[0];
+		while (!(element instanceof Class<?>)) {
+			if (element instanceof WildcardType wildcard) {
+				element = wildcard.getUpperBounds()[0];
+			} else if (element instanceof TypeVariable<?> variable) {
+				element = variable.getBounds()[0];
+			} else if (element instanceof ParameterizedType elementParameterized) {
+				element = elementParameterized.getRawType();
+			} else {
+				return Event.class;
+			}
+		}
+		return element == Object.class ? Event.class : (Class<?>) element;
+	}
+}
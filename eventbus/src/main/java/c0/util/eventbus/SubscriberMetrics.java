@@ -0,0 +1,54 @@
+package c0.util.eventbus;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measurements of one subscriber while instrumentation is enabled
+ */
+final class SubscriberMetrics {
+
+	private final Instrumentation instrumentation;
+	private final LongAdder invocations = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+	private final LatencyHistogram latencies = new LatencyHistogram();
+
+	SubscriberMetrics(Instrumentation instrumentation) {
+		this.instrumentation = instrumentation;
+	}
+
+	void record(Subscriber subscriber, Object event, long durationNanos, Exception error) {
+		invocations.increment();
+		if (error != null) {
+			errors.increment();
+		}
+		latencies.record(durationNanos);
+
+		MetricsListener listener = instrumentation.getListener();
+		if (listener != null) {
+			listener.onInvocation(subscriber.getListener(), subscriber.getMethod(), durationNanos, error);
+		}
+		if (durationNanos >= instrumentation.getSlowThresholdNanos()) {
+			if (listener != null) {
+				listener.onSlowHandler(subscriber.getListener(), subscriber.getMethod(), event, durationNanos);
+			} else {
+				System.err.println("Slow subscriber " + subscriber.getListener().getClass().getName() + "."
+						+ subscriber.getMethod().getName() + " took " + durationNanos / 1000 + " us");
+			}
+		}
+		if (instrumentation.isJfrEvents()) {
+			SubscriberInvocationEvent.emit(subscriber, durationNanos, error);
+		}
+	}
+
+	long invocations() {
+		return invocations.sum();
+	}
+
+	long errors() {
+		return errors.sum();
+	}
+
+	LatencyHistogram latencies() {
+		return latencies;
+	}
+}
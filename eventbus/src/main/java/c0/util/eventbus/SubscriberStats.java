@@ -0,0 +1,129 @@
+package c0.util.eventbus;
+
+import c0.util.eventbus.annotations.Subscribe.ThreadMode;
+
+/**
+ * Point in time statistics of one registered subscriber
+ */
+public final class SubscriberStats {
+
+	private final Class<?> listenerClass;
+	private final String methodName;
+	private final Class<?> eventType;
+	private final ThreadMode threadMode;
+	private final int queueDepth;
+	private final int queueCapacity;
+	private final long droppedCount;
+	private final long conflatedCount;
+	private final long invocationCount;
+	private final long errorCount;
+	private final long p50Nanos;
+	private final long p99Nanos;
+	private final long p999Nanos;
+
+	SubscriberStats(Subscriber subscriber) {
+		this.listenerClass = subscriber.getListener().getClass();
+		this.methodName = subscriber.getMethod().getName();
+		this.eventType = subscriber.getEventType();
+		this.threadMode = subscriber.getThreadMode();
+		int depth = 0, capacity = 0;
+		long dropped = 0, conflated = 0;
+		for (Mailbox mailbox : subscriber.getMailboxes()) {
+			depth += mailbox.size();
+			capacity += mailbox.capacity();
+			dropped += mailbox.dropped();
+			conflated += mailbox.conflated();
+		}
+		this.queueDepth = depth;
+		this.queueCapacity = capacity;
+		this.droppedCount = dropped;
+		this.conflatedCount = conflated;
+		SubscriberMetrics metrics = subscriber.getMetrics();
+		this.invocationCount = metrics == null ? 0 : metrics.invocations();
+		this.errorCount = metrics == null ? 0 : metrics.errors();
+		this.p50Nanos = metrics == null ? 0 : metrics.latencies().percentile(50);
+		this.p99Nanos = metrics == null ? 0 : metrics.latencies().percentile(99);
+		this.p999Nanos = metrics == null ? 0 : metrics.latencies().percentile(99.9);
+	}
+
+	public Class<?> getListenerClass() {
+		return listenerClass;
+	}
+
+	public String getMethodName() {
+		return methodName;
+	}
+
+	public Class<?> getEventType() {
+		return eventType;
+	}
+
+	public ThreadMode getThreadMode() {
+		return threadMode;
+	}
+
+	/**
+	 * Number of events waiting to be delivered, always 0 for
+	 * {@link ThreadMode#POSTING} subscribers
+	 */
+	public int getQueueDepth() {
+		return queueDepth;
+	}
+
+	/**
+	 * Total queue capacity, summed over all partitions for
+	 * {@link ThreadMode#PARTITIONED} subscribers
+	 */
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	/**
+	 * Number of events dropped or rejected because the queue was full
+	 */
+	public long getDroppedCount() {
+		return droppedCount;
+	}
+
+	/**
+	 * Number of pending events replaced by a newer event with the same key
+	 */
+	public long getConflatedCount() {
+		return conflatedCount;
+	}
+
+	/**
+	 * Number of deliveries since instrumentation was enabled, always 0 while it is
+	 * disabled. The same applies to the error count and latencies.
+	 */
+	public long getInvocationCount() {
+		return invocationCount;
+	}
+
+	/**
+	 * Number of deliveries where the subscriber threw an exception
+	 */
+	public long getErrorCount() {
+		return errorCount;
+	}
+
+	public long getP50Nanos() {
+		return p50Nanos;
+	}
+
+	public long getP99Nanos() {
+		return p99Nanos;
+	}
+
+	public long getP999Nanos() {
+		return p999Nanos;
+	}
+
+	@Override
+	public String toString() {
+		return listenerClass.getSimpleName() + "." + methodName + "(" + eventType.getSimpleName() + ")[" + threadMode
+				+ ", queued=" + queueDepth + "/" + queueCapacity + ", dropped=" + droppedCount + ", conflated=" + conflatedCount
+				+ ", invocations=" + invocationCount + ", errors=" + errorCount + ", p50=" + p50Nanos + "ns, p99=" + p99Nanos
+				+ "ns, p999=" + p999Nanos + "ns]";
+	}
+}
@@ -0,0 +1,71 @@
+package c0.util.eventbus;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How threads of a ring buffer dispatcher wait when there is nothing to consume
+ * or no free slot to publish into. Strategies trade CPU usage for latency.
+ */
+public enum WaitStrategy {
+	/**
+	 * Spins on the CPU. Lowest latency, but keeps a core fully busy per waiting
+	 * thread
+	 */
+	BUSY_SPIN {
+		@Override
+		void idle(int attempt) {
+			Thread.onSpinWait();
+		}
+	},
+	/**
+	 * Spins for a short while, then yields the CPU to other threads between checks
+	 */
+	YIELD {
+		@Override
+		void idle(int attempt) {
+			if (attempt < SPIN_TRIES) {
+				Thread.onSpinWait();
+			} else {
+				Thread.yield();
+			}
+		}
+	},
+	/**
+	 * Spins and yields for a short while, then parks between checks. Uses the
+	 * least CPU, at the cost of up to {@link #PARK_NANOS} extra latency when idle
+	 */
+	PARK {
+		@Override
+		void idle(int attempt) {
+			if (attempt < SPIN_TRIES) {
+				Thread.onSpinWait();
+			} else if (attempt < SPIN_TRIES + YIELD_TRIES) {
+				Thread.yield();
+			} else {
+				LockSupport.parkNanos(PARK_NANOS);
+			}
+		}
+	};
+
+	private static final int SPIN_TRIES = 100;
+	private static final int YIELD_TRIES = 100;
+	static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+	// Every strategy has fully backed off by this many attempts
+	private static final int MAX_ATTEMPT = SPIN_TRIES + YIELD_TRIES;
+
+	/**
+	 * Waits once. {@code attempt} counts how many times in a row the caller found
+	 * nothing to do, so strategies can back off
+	 */
+	abstract void idle(int attempt);
+
+	/**
+	 * The attempt after this one. Stops counting once every strategy has backed
+	 * off, so long idle periods cannot overflow the count back into spinning.
+	 */
+	static int nextAttempt(int attempt) {
+		return attempt < MAX_ATTEMPT ? attempt + 1 : MAX_ATTEMPT;
+	}
+}
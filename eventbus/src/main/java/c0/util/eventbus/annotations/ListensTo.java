@@ -5,6 +5,11 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
+/**
+ * Declares the event types a listener class receives. Read by the event bus when
+ * the listener is registered, to build routes for these types ahead of time and
+ * to report declared types that nothing posts.
+ */
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.TYPE)
 public @interface ListensTo {
@@ -5,6 +5,11 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
+/**
+ * Declares the event types a class posts. Read by the event bus when the class
+ * is registered, to build routes for these types ahead of time and to report
+ * declared types that no subscriber receives.
+ */
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.TYPE)
 public @interface Posts {
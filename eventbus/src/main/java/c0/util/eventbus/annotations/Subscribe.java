@@ -10,10 +10,112 @@ import java.lang.annotation.Target;
  * parameter for these methods should be the event of the type that this method
  * acts as a subscriber to. 
  * 
+ * A subscriber can instead take a {@code List} of events, for example "public void onPrices(List<PriceEvent> events)", to receive events in batches: all matching events of an {@code EventBus.postAll} call at once, or everything pending in its queue when asynchronous.
+ * 
  * Subscribers can set a priority of type int for themselves in the annotation, for example "@Subscriber(priority = 5)". Higher value = lower priority.
+ * 
+ * Subscribers can also choose the thread they are called on with a {@link ThreadMode}, for example "@Subscribe(threadMode = ThreadMode.ASYNC)". By default they are called on the posting thread.
+ * 
+ * Subscribers that need order only per key, for example per account, can use "@Subscribe(threadMode = ThreadMode.PARTITIONED)". Events with the same key are then handled in order on one of the bus's partitions, while different keys are handled in parallel.
+ * 
+ * Asynchronous subscribers queue their pending events in a bounded mailbox, sized with "queueCapacity". What happens to new events while it is full is set with an {@link Overflow} policy, for example "@Subscribe(threadMode = ThreadMode.ASYNC, queueCapacity = 64, overflow = Overflow.DROP_OLDEST)".
+ * 
+ * Asynchronous subscribers that only care about the latest value can conflate, for example "@Subscribe(threadMode = ThreadMode.SERIAL, conflate = true)". A new event then replaces a pending event with the same key, so the subscriber never falls behind on stale updates. Conflating subscribers must receive {@link c0.util.eventbus.events.Keyed} events.
+ * 
+ * Subscribers can narrow the events they receive to certain {@link c0.util.eventbus.events.Event.Type}s by name, for example "@Subscribe(types = {"PRICE", "TRADE"})". By default they receive every event of the parameter's class.
  */
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.METHOD)
 public @interface Subscribe {
+	int DEFAULT_QUEUE_CAPACITY = 1024;
+
 	int priority() default 0;
-}
\ No newline at end of file
+
+	ThreadMode threadMode() default ThreadMode.POSTING;
+
+	/**
+	 * Names of the event types this subscriber receives, matched against
+	 * {@link c0.util.eventbus.events.Event.Type#getName()}. Empty to receive all
+	 */
+	String[] types() default {};
+
+	/**
+	 * Maximum number of events waiting for an asynchronous subscriber. Ignored for
+	 * {@link ThreadMode#POSTING}
+	 */
+	int queueCapacity() default DEFAULT_QUEUE_CAPACITY;
+
+	/**
+	 * What happens to a new event while the subscriber's queue is full. Ignored for
+	 * {@link ThreadMode#POSTING}
+	 */
+	Overflow overflow() default Overflow.BLOCK;
+
+	/**
+	 * Whether a new event replaces a pending event with the same
+	 * {@link c0.util.eventbus.events.Keyed#getKey()} instead of queueing behind it.
+	 * Only allowed for subscribers of keyed events, registering any other fails.
+	 * Ignored for {@link ThreadMode#POSTING}
+	 */
+	boolean conflate() default false;
+
+	/**
+	 * Thread on which a subscriber is called when an event is posted
+	 */
+	enum ThreadMode {
+		/**
+		 * Called directly on the thread that posted the event, before post returns
+		 */
+		POSTING,
+		/**
+		 * Handed off to the bus's shared thread pool. Deliveries to the same
+		 * subscriber may run concurrently
+		 */
+		ASYNC,
+		/**
+		 * Called on a new virtual thread for every delivery, for handlers that
+		 * block. Deliveries to the same subscriber may run concurrently
+		 */
+		VIRTUAL,
+		/**
+		 * Handed off to the shared thread pool, but deliveries to this subscriber run
+		 * one at a time in the order they were posted
+		 */
+		SERIAL,
+		/**
+		 * Handed off to one of the bus's single threaded partitions, picked by the
+		 * event's key (see {@link c0.util.eventbus.events.Keyed}). Events with the
+		 * same key are delivered one at a time in the order they were posted, events
+		 * with different keys may be delivered in parallel. The queue capacity
+		 * applies to each partition
+		 */
+		PARTITIONED;
+	}
+
+	/**
+	 * Policy applied when an event is posted to an asynchronous subscriber whose
+	 * queue is full
+	 */
+	enum Overflow {
+		/**
+		 * The posting thread waits until the subscriber has taken an event. A
+		 * subscriber that is itself called asynchronously does not wait, since it
+		 * could hold the very thread that would take the event, and its post fails
+		 * as with {@link #FAIL}
+		 */
+		BLOCK,
+		/**
+		 * The new event is dropped for this subscriber
+		 */
+		DROP_NEWEST,
+		/**
+		 * The oldest waiting event is dropped to make room for the new one
+		 */
+		DROP_OLDEST,
+		/**
+		 * The new event is dropped and post throws an
+		 * {@link IllegalStateException}
+		 */
+		FAIL;
+	}
+}
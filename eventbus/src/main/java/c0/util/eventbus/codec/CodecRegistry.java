@@ -0,0 +1,122 @@
+package c0.util.eventbus.codec;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import c0.util.eventbus.events.Event;
+
+/**
+ * Codecs for the event types that may leave the process, each under a numeric
+ * type id. The ids are written along with the events, so every process reading
+ * them has to register the same types under the same ids.
+ * <p>
+ * Events of a subtype without a codec of their own are encoded with the codec of
+ * their nearest registered supertype, and are decoded as that supertype.
+ */
+public final class CodecRegistry {
+
+	private final Map<Class<?>, Registration<?>> byType = new ConcurrentHashMap<>();
+	private final Map<Integer, Registration<?>> byId = new ConcurrentHashMap<>();
+	// Registration found for each encoded class, including subtypes of registered types
+	private final Map<Class<?>, Registration<?>> resolved = new ConcurrentHashMap<>();
+
+	public <T extends Event> CodecRegistry register(int typeId, Class<T> eventType, EventCodec<T> codec) {
+		if (typeId < 0) {
+			throw new IllegalArgumentException("Type id must not be negative, was " + typeId);
+		}
+		Registration<T> registration = new Registration<>(typeId, eventType, codec);
+		synchronized (this) {
+			if (byId.containsKey(typeId)) {
+				throw new IllegalArgumentException("Type id " + typeId + " is already used by " + byId.get(typeId).eventType.getName());
+			}
+			if (byType.containsKey(eventType)) {
+				throw new IllegalArgumentException(eventType.getName() + " already has a codec");
+			}
+			byId.put(typeId, registration);
+			byType.put(eventType, registration);
+			// A subtype may now have a closer codec
+			resolved.clear();
+		}
+		return this;
+	}
+
+	/**
+	 * Whether events of this class can be encoded, by its own codec or that of a
+	 * supertype
+	 */
+	public boolean supports(Class<?> eventType) {
+		return find(eventType) != null;
+	}
+
+	public Set<Class<?>> getEventTypes() {
+		return Set.copyOf(byType.keySet());
+	}
+
+	public int typeIdOf(Class<?> eventType) {
+		return registration(eventType).typeId;
+	}
+
+	/**
+	 * Writes the event without its type id, see {@link #typeIdOf(Class)}
+	 */
+	public void encode(Event event, ByteBuffer buffer) {
+		registration(event.getClass()).encode(event, buffer);
+	}
+
+	public Event decode(int typeId, ByteBuffer buffer) {
+		Registration<?> registration = byId.get(typeId);
+		if (registration == null) {
+			throw new IllegalArgumentException("No codec for type id " + typeId);
+		}
+		return registration.codec.decode(buffer);
+	}
+
+	private Registration<?> registration(Class<?> eventType) {
+		Registration<?> registration = find(eventType);
+		if (registration == null) {
+			throw new IllegalArgumentException("No codec for " + eventType.getName());
+		}
+		return registration;
+	}
+
+	private Registration<?> find(Class<?> eventType) {
+		Registration<?> registration = resolved.get(eventType);
+		if (registration != null) {
+			return registration;
+		}
+		for (Class<?> type = eventType; type != null && registration == null; type = type.getSuperclass()) {
+			registration = byType.get(type);
+		}
+		if (registration == null) {
+			// Codecs registered for interfaces
+			for (Registration<?> candidate : byType.values()) {
+				if (candidate.eventType.isAssignableFrom(eventType)) {
+					registration = candidate;
+					break;
+				}
+			}
+		}
+		if (registration != null) {
+			resolved.put(eventType, registration);
+		}
+		return registration;
+	}
+
+	private static final class Registration<T extends Event> {
+		private final int typeId;
+		private final Class<T> eventType;
+		private final EventCodec<T> codec;
+
+		private Registration(int typeId, Class<T> eventType, EventCodec<T> codec) {
+			this.typeId = typeId;
+			this.eventType = eventType;
+			this.codec = codec;
+		}
+
+		private void encode(Event event, ByteBuffer buffer) {
+			codec.encode(eventType.cast(event), buffer);
+		}
+	}
+}
@@ -0,0 +1,50 @@
+package c0.util.eventbus.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import c0.util.eventbus.events.Event;
+
+/**
+ * Writes events of one type to a binary form and reads them back, used to move
+ * events out of the process. Codecs write straight into the target buffer, for
+ * example a memory mapped file, so events are not copied through intermediate
+ * arrays.
+ */
+public interface EventCodec<T extends Event> {
+
+	/**
+	 * Writes the event at the buffer's position. Throws
+	 * {@link java.nio.BufferOverflowException} if the buffer is too small, in which
+	 * case the caller retries with a larger buffer.
+	 */
+	void encode(T event, ByteBuffer buffer);
+
+	/**
+	 * Reads an event written by {@link #encode(Event, ByteBuffer)} from the
+	 * buffer's position
+	 */
+	T decode(ByteBuffer buffer);
+
+	/**
+	 * Writes a string as its UTF-8 length and bytes, null as length -1
+	 */
+	static void putString(ByteBuffer buffer, String value) {
+		if (value == null) {
+			buffer.putInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		buffer.putInt(bytes.length).put(bytes);
+	}
+
+	static String getString(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -1,24 +1,80 @@
 package c0.util.eventbus.events;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 
-public abstract class BaseEvent implements Event{
+import c0.util.pool.AbstractPooledObject;
 
-	private final String TIMESTAMP_FORMATTER_PATTERN = "HH:mm:ss dd-MM-yyyy";
+public abstract class BaseEvent extends AbstractPooledObject<Event> implements Event{
 
-	protected String timestamp;
+	private static final DateTimeFormatter TIMESTAMP_FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss dd-MM-yyyy");
 
+	// The pattern has no sub-second fields, so every event captured within the same second shares one formatted string
+	private static volatile FormattedSecond lastFormatted = new FormattedSecond(Long.MIN_VALUE, null);
+
+	protected long timestampMillis;
+	protected long timestampNanos;
+
+	// Id of the connection to another process the event arrived through, 0 for events posted in this process
+	private long origin;
+
+	/**
+	 * Captures the raw time of the event. Formatting is deferred to {@link #getTimestamp()}
+	 */
 	protected void captureTimestamp(){
-		LocalDateTime now = LocalDateTime.now();
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern(TIMESTAMP_FORMATTER_PATTERN);
-        timestamp = now.format(formatter);
+		timestampMillis = System.currentTimeMillis();
+		timestampNanos = System.nanoTime();
 	}
 
 	@Override
-    public String getTimestamp(){
-        return timestamp;
-    }
+	public String getTimestamp(){
+		long second = Math.floorDiv(timestampMillis, 1000);
+		FormattedSecond cached = lastFormatted;
+		if (cached.second() == second) {
+			return cached.text();
+		}
+		String text = TIMESTAMP_FORMATTER.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(timestampMillis), ZoneId.systemDefault()));
+		lastFormatted = new FormattedSecond(second, text);
+		return text;
+	}
+
+	/**
+	 * Wall clock time of the event in milliseconds since the epoch
+	 */
+	public long getTimestampMillis(){
+		return timestampMillis;
+	}
+
+	/**
+	 * {@link System#nanoTime()} of the event, only meaningful relative to other nano times of the same JVM
+	 */
+	public long getTimestampNanos(){
+		return timestampNanos;
+	}
+
+	/**
+	 * Nanoseconds passed since the event was created or taken from the pool, for measuring delivery latency
+	 */
+	public long getAgeNanos(){
+		return System.nanoTime() - timestampNanos;
+	}
+
+	private record FormattedSecond(long second, String text) {
+	}
+
+	/**
+	 * Id of the connection to another process that the event arrived through, or 0 if it was posted in this process.
+	 * Used by {@link c0.util.eventbus.SharedMemoryBridge} so events are not sent back to where they came from
+	 */
+	public long getOrigin(){
+		return origin;
+	}
+
+	public void setOrigin(long origin){
+		this.origin = origin;
+	}
 
 	protected Event.Type type;
 
@@ -32,4 +88,14 @@ public abstract class BaseEvent implements Event{
 		this.type = type;
 	}
 
+	/**
+	 * Called when the event is taken from the object pool for reuse, captures a new timestamp
+	 */
+	@Override
+	public Event init(){
+		captureTimestamp();
+		origin = 0;
+		return this;
+	}
+
 }
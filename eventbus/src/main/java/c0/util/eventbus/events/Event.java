@@ -1,6 +1,6 @@
 package c0.util.eventbus.events;
 
-import c0.util.objectpool.PooledObject;
+import c0.util.pool.PooledObject;
 
 public interface Event extends PooledObject<Event> {
 
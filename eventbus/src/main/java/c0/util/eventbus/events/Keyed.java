@@ -0,0 +1,35 @@
+package c0.util.eventbus.events;
+
+/**
+ * Interface for events that carry a key identifying what they are about, for
+ * example an instrument or an account. Subscribers that conflate only keep the
+ * newest pending event per key, and can only subscribe to keyed events.
+ * Partitioned subscribers receive events with the same key in order.
+ */
+public interface Keyed {
+
+	Object getKey();
+
+	/**
+	 * Key made of an event type and an id within that type, for events that
+	 * update one entity among many of the same type
+	 */
+	static Object of(Event.Type type, Object id) {
+		return new TypeKey(type, id);
+	}
+
+	/**
+	 * Key the bus partitions any event by: its own key if it is {@link Keyed}, else
+	 * its {@link Event.Type}, else its class
+	 */
+	static Object keyOf(Event event) {
+		if (event instanceof Keyed keyed) {
+			return keyed.getKey();
+		}
+		Event.Type type = event.getType();
+		return type != null ? type : event.getClass();
+	}
+
+	record TypeKey(Event.Type type, Object id) {
+	}
+}
@@ -0,0 +1,252 @@
+package c0.util.eventbus.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+import c0.util.eventbus.annotations.Subscribe;
+import c0.util.eventbus.annotations.Subscribe.ThreadMode;
+
+/**
+ * Annotation processor that generates a {@code SubscriberIndex} for every
+ * concrete listener class with {@link Subscribe} methods, including inherited
+ * ones. The generated index calls the subscriber methods directly, so
+ * registering a listener needs no reflection, which also makes the bus usable
+ * in ahead-of-time compiled images. Each index is named after its listener
+ * class, which is how the bus finds it.
+ * <p>
+ * Classes that the generated code cannot reach, such as private nested
+ * classes, are skipped and keep using reflection at runtime.
+ * <p>
+ * Indexes describe subscribers through {@code SubscriberMethod.builder}, so
+ * indexes compiled against an older version keep working when subscribers gain
+ * new settings.
+ */
+public class SubscriberIndexProcessor extends AbstractProcessor {
+
+	static final String INDEX_SUFFIX = "$$SubscriberIndex";
+	private static final String LIST_TYPE = List.class.getName();
+
+	private Elements elements;
+	private Types types;
+	private Filer filer;
+	private Messager messager;
+
+	private TypeMirror exceptionType;
+	private TypeMirror eventBaseType;
+	private TypeMirror keyedType;
+
+	@Override
+	public synchronized void init(ProcessingEnvironment processingEnv) {
+		super.init(processingEnv);
+		this.elements = processingEnv.getElementUtils();
+		this.types = processingEnv.getTypeUtils();
+		this.filer = processingEnv.getFiler();
+		this.messager = processingEnv.getMessager();
+		this.exceptionType = elements.getTypeElement(Exception.class.getCanonicalName()).asType();
+		this.eventBaseType = elements.getTypeElement("c0.util.eventbus.events.Event").asType();
+		this.keyedType = elements.getTypeElement("c0.util.eventbus.events.Keyed").asType();
+	}
+
+	@Override
+	public Set<String> getSupportedAnnotationTypes() {
+		return Set.of(Subscribe.class.getCanonicalName());
+	}
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		// Every root type is checked, so listeners that only inherit their
+		// subscribers are indexed too
+		for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+			processType(type);
+		}
+		// Nobody else handles @Subscribe
+		return true;
+	}
+
+	private void processType(TypeElement type) {
+		for (TypeElement nested : ElementFilter.typesIn(type.getEnclosedElements())) {
+			processType(nested);
+		}
+		if (type.getKind() != ElementKind.CLASS || type.getModifiers().contains(Modifier.ABSTRACT)) {
+			return;
+		}
+
+		List<ExecutableElement> subscribers = new ArrayList<>();
+		boolean indexable = isReachable(type);
+		for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(type))) {
+			Subscribe annotation = method.getAnnotation(Subscribe.class);
+			if (annotation == null || !method.getModifiers().contains(Modifier.PUBLIC)) {
+				continue;
+			}
+			// The capacity is ignored on the posting thread
+			if (annotation.threadMode() != ThreadMode.POSTING && annotation.queueCapacity() < 1) {
+				messager.printMessage(Diagnostic.Kind.ERROR, "Event subscriber " + method.getSimpleName()
+						+ " must have a queue capacity of at least 1.", method);
+				return;
+			}
+			if (method.getParameters().size() != 1) {
+				messager.printMessage(Diagnostic.Kind.ERROR, "Event subscriber " + method.getSimpleName()
+						+ " must have exactly one parameter for the event that will be passed to it.", method);
+				return;
+			}
+			TypeMirror eventType = eventType(method);
+			if (annotation.conflate() && !types.isAssignable(eventType, keyedType)) {
+				messager.printMessage(Diagnostic.Kind.ERROR, "Event subscriber " + method.getSimpleName()
+						+ " conflates events that do not implement c0.util.eventbus.events.Keyed.", method);
+				return;
+			}
+			indexable &= eventType.getKind() == TypeKind.DECLARED
+					&& isReachable((TypeElement) types.asElement(eventType));
+			// The generated invoker can only rethrow exceptions
+			for (TypeMirror thrown : method.getThrownTypes()) {
+				indexable &= types.isSubtype(thrown, exceptionType);
+			}
+			subscribers.add(method);
+		}
+		if (subscribers.isEmpty() || !indexable) {
+			return;
+		}
+
+		try {
+			writeIndex(type, subscribers);
+		} catch (IOException e) {
+			messager.printMessage(Diagnostic.Kind.WARNING,
+					"Could not generate subscriber index, falling back to reflection: " + e.getMessage(), type);
+		}
+	}
+
+	private boolean isBatch(ExecutableElement method) {
+		TypeMirror parameter = types.erasure(method.getParameters().get(0).asType());
+		return parameter.toString().equals(LIST_TYPE);
+	}
+
+	/**
+	 * Erased type of the events a subscriber receives, the element type for
+	 * subscribers taking a list of events
+	 */
+	private TypeMirror eventType(ExecutableElement method) {
+		TypeMirror parameter = method.getParameters().get(0).asType();
+		if (!isBatch(method)) {
+			return types.erasure(parameter);
+		}
+		List<? extends TypeMirror> arguments = ((DeclaredType) parameter).getTypeArguments();
+		if (arguments.isEmpty()) {
+			return eventBaseType;
+		}
+		TypeMirror element = arguments.get(0);
+		if (element instanceof WildcardType wildcard) {
+			element = wildcard.getExtendsBound() != null ? wildcard.getExtendsBound() : eventBaseType;
+		}
+		element = types.erasure(element);
+		return element.toString().equals(Object.class.getName()) ? eventBaseType : element;
+	}
+
+	/**
+	 * Whether code in the same package can reference the class, which rules out
+	 * private and local classes and classes nested in them
+	 */
+	private boolean isReachable(TypeElement type) {
+		Element element = type;
+		while (element instanceof TypeElement typeElement) {
+			if (typeElement.getNestingKind() == NestingKind.LOCAL
+					|| typeElement.getNestingKind() == NestingKind.ANONYMOUS
+					|| typeElement.getModifiers().contains(Modifier.PRIVATE)) {
+				return false;
+			}
+			element = typeElement.getEnclosingElement();
+		}
+		return true;
+	}
+
+	private void writeIndex(TypeElement type, List<ExecutableElement> subscribers) throws IOException {
+		PackageElement packageElement = elements.getPackageOf(type);
+		String packageName = packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+		String binaryName = elements.getBinaryName(type).toString();
+		String simpleBinaryName = packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1);
+		String indexName = simpleBinaryName + INDEX_SUFFIX;
+		String listenerName = types.erasure(type.asType()).toString();
+
+		StringBuilder source = new StringBuilder();
+		if (!packageName.isEmpty()) {
+			source.append("package ").append(packageName).append(";\n\n");
+		}
+		// A comment rather than @Generated, which no processor claims and -Xlint would
+		// warn about in every consumer's build
+		source.append("// Generated by ").append(getClass().getName()).append("\n");
+		source.append("public final class ").append(indexName).append(" implements c0.util.eventbus.SubscriberIndex {\n\n");
+		source.append("\t@Override\n");
+		source.append("\tpublic Class<?> listenerClass() {\n");
+		source.append("\t\treturn ").append(listenerName).append(".class;\n");
+		source.append("\t}\n\n");
+		source.append("\t@Override\n");
+		source.append("\t@SuppressWarnings({ \"rawtypes\", \"unchecked\" })\n");
+		source.append("\tpublic c0.util.eventbus.SubscriberMethod[] subscriberMethods() {\n");
+		source.append("\t\treturn new c0.util.eventbus.SubscriberMethod[] {\n");
+		for (ExecutableElement method : subscribers) {
+			Subscribe annotation = method.getAnnotation(Subscribe.class);
+			String eventType = eventType(method).toString();
+			boolean batch = isBatch(method);
+			String parameterType = batch ? LIST_TYPE : eventType;
+			String target = method.getModifiers().contains(Modifier.STATIC) ? listenerName
+					: "((" + listenerName + ") listener)";
+			source.append("\t\t\tc0.util.eventbus.SubscriberMethod.builder(\"").append(method.getSimpleName())
+					.append("\", ").append(eventType).append(".class,\n");
+			source.append("\t\t\t\t\t(listener, event) -> ").append(target).append('.')
+					.append(method.getSimpleName()).append("((").append(parameterType).append(") event))\n");
+			source.append("\t\t\t\t\t.priority(").append(annotation.priority()).append(")")
+					.append(".threadMode(c0.util.eventbus.annotations.Subscribe.ThreadMode.")
+					.append(annotation.threadMode().name()).append(")\n");
+			source.append("\t\t\t\t\t.types(");
+			String[] eventTypeNames = annotation.types();
+			for (int i = 0; i < eventTypeNames.length; i++) {
+				source.append(i == 0 ? "" : ", ").append(elements.getConstantExpression(eventTypeNames[i]));
+			}
+			source.append(")");
+			source.append(".queueCapacity(").append(annotation.queueCapacity()).append(")")
+					.append(".overflow(c0.util.eventbus.annotations.Subscribe.Overflow.")
+					.append(annotation.overflow().name()).append(")\n");
+			source.append("\t\t\t\t\t.conflate(").append(annotation.conflate()).append(")")
+					.append(".batch(").append(batch).append(").build(),\n");
+		}
+		source.append("\t\t};\n");
+		source.append("\t}\n");
+		source.append("}\n");
+
+		String qualifiedIndexName = packageName.isEmpty() ? indexName : packageName + "." + indexName;
+		JavaFileObject file = filer.createSourceFile(qualifiedIndexName, type);
+		try (Writer writer = file.openWriter()) {
+			writer.write(source.toString());
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package c0.util.eventbus.remote;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Transport between nodes in the same process, meant for tests. Frames are
+ * copied and handed to the peer's receiver on a thread of the peer, in the
+ * order they were sent, so nodes sending to each other cannot block one
+ * another.
+ */
+public final class LoopbackTransport implements Transport {
+
+	private final Network network;
+	private final String node;
+	private volatile Receiver receiver;
+	private final ExecutorService inbox;
+
+	private LoopbackTransport(Network network, String node) {
+		this.network = network;
+		this.node = node;
+		this.inbox = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "eventbus-loopback-" + node);
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	@Override
+	public void send(String peer, ByteBuffer frame) {
+		LoopbackTransport target = network.nodes.get(peer);
+		if (target == null) {
+			throw new IllegalArgumentException("Unknown peer " + peer);
+		}
+		ByteBuffer copy = ByteBuffer.allocate(frame.remaining());
+		copy.put(frame.duplicate()).flip();
+		target.inbox.execute(() -> {
+			Receiver targetReceiver = target.receiver;
+			if (targetReceiver != null) {
+				targetReceiver.receive(node, copy);
+			}
+		});
+	}
+
+	@Override
+	public void bind(Receiver receiver) {
+		this.receiver = receiver;
+	}
+
+	@Override
+	public void close() {
+		network.nodes.remove(node, this);
+		inbox.shutdown();
+	}
+
+	/**
+	 * Set of nodes that can reach each other
+	 */
+	public static final class Network {
+		private final Map<String, LoopbackTransport> nodes = new ConcurrentHashMap<>();
+
+		/**
+		 * Transport of a new node on this network
+		 */
+		public LoopbackTransport join(String node) {
+			LoopbackTransport transport = new LoopbackTransport(this, node);
+			if (nodes.putIfAbsent(node, transport) != null) {
+				throw new IllegalArgumentException("Node " + node + " already joined");
+			}
+			return transport;
+		}
+	}
+}
@@ -0,0 +1,32 @@
+package c0.util.eventbus.remote;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Moves encoded batches of events between nodes. Implementations connect the
+ * local node to its peers, for example over sockets or a message broker, and
+ * hand every frame they receive to the bound receiver.
+ */
+public interface Transport extends AutoCloseable {
+
+	/**
+	 * Sends a frame to the peer. The frame's bytes between its position and limit
+	 * belong to the caller again once this returns, so asynchronous
+	 * implementations have to copy them. May be called from several threads.
+	 */
+	void send(String peer, ByteBuffer frame);
+
+	/**
+	 * Sets the receiver of frames sent to this node
+	 */
+	void bind(Receiver receiver);
+
+	@Override
+	default void close() {
+	}
+
+	@FunctionalInterface
+	interface Receiver {
+		void receive(String peer, ByteBuffer frame);
+	}
+}
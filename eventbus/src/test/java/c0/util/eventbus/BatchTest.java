@@ -0,0 +1,172 @@
+package c0.util.eventbus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import c0.util.eventbus.annotations.Subscribe;
+import c0.util.eventbus.annotations.Subscribe.ThreadMode;
+import c0.util.eventbus.events.BaseEvent;
+import c0.util.eventbus.events.Event;
+
+public class BatchTest {
+
+	public static class Price extends BaseEvent {
+		final int value;
+
+		public Price(String type, int value) {
+			super(() -> type);
+			this.value = value;
+		}
+
+		@Override
+		public void reset() {
+		}
+	}
+
+	public static class Trade extends BaseEvent {
+		public Trade() {
+			super(() -> "TRADE");
+		}
+
+		@Override
+		public void reset() {
+		}
+	}
+
+	public static class Listener {
+		final List<List<Integer>> batches = new ArrayList<>();
+		final List<List<Integer>> bidBatches = new ArrayList<>();
+		final List<Integer> single = new ArrayList<>();
+		final List<String> order = new ArrayList<>();
+
+		@Subscribe
+		public void onPrices(List<Price> prices) {
+			order.add("batch");
+			batches.add(values(prices));
+		}
+
+		@Subscribe(types = "BID")
+		public void onBids(List<Price> prices) {
+			bidBatches.add(values(prices));
+		}
+
+		@Subscribe
+		public void onPrice(Price price) {
+			order.add("single");
+			single.add(price.value);
+		}
+	}
+
+	public static class Sequence {
+		final List<String> received = new ArrayList<>();
+		final List<List<String>> batches = new ArrayList<>();
+
+		@Subscribe
+		public void onEvent(Event event) {
+			received.add(event.getType().getName());
+		}
+
+		@Subscribe
+		public void onEvents(List<Event> events) {
+			List<String> names = new ArrayList<>();
+			for (Event event : events) {
+				names.add(event.getType().getName());
+			}
+			batches.add(names);
+		}
+	}
+
+	public static class SerialListener {
+		final List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+		final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+		final CountDownLatch done;
+
+		SerialListener(int expected) {
+			done = new CountDownLatch(expected);
+		}
+
+		@Subscribe(threadMode = ThreadMode.SERIAL)
+		public void onPrices(List<Price> prices) {
+			batchSizes.add(prices.size());
+			for (Price price : prices) {
+				received.add(price.value);
+				done.countDown();
+			}
+		}
+	}
+
+	private static List<Integer> values(List<Price> prices) {
+		List<Integer> values = new ArrayList<>();
+		for (Price price : prices) {
+			values.add(price.value);
+		}
+		return values;
+	}
+
+	private final EventBus bus = new EventBus();
+
+	@After
+	public void teardown() {
+		bus.shutdown();
+	}
+
+	@Test
+	public void postAllDeliversOneListPerSubscriberAfterSingleSubscribers() {
+		Listener listener = new Listener();
+		bus.register(listener);
+		bus.postAll(List.of(new Price("BID", 1), new Trade(), new Price("ASK", 2), new Price("BID", 3)));
+
+		assertEquals(List.of(List.of(1, 2, 3)), listener.batches);
+		assertEquals(List.of(List.of(1, 3)), listener.bidBatches);
+		assertEquals(List.of(1, 2, 3), listener.single);
+		assertEquals(List.of("single", "single", "single", "batch"), listener.order);
+	}
+
+	// Events of different classes are not grouped by route
+	@Test
+	public void postAllKeepsTheCollectionOrderAcrossEventClasses() {
+		Sequence sequence = new Sequence();
+		bus.register(sequence);
+		bus.postAll(List.of(new Price("BID", 1), new Trade(), new Price("ASK", 2), new Trade(), new Price("BID", 3)));
+
+		assertEquals(List.of("BID", "TRADE", "ASK", "TRADE", "BID"), sequence.received);
+		assertEquals(List.of(List.of("BID", "TRADE", "ASK", "TRADE", "BID")), sequence.batches);
+	}
+
+	@Test
+	public void singlePostsArriveAsListsOfOne() {
+		Listener listener = new Listener();
+		bus.register(listener);
+		bus.post(new Price("ASK", 7));
+		assertEquals(List.of(List.of(7)), listener.batches);
+		assertTrue(listener.bidBatches.isEmpty());
+	}
+
+	@Test
+	public void asynchronousBatchesTakeEverythingPendingInOrder() throws InterruptedException {
+		int count = 5000;
+		SerialListener listener = new SerialListener(count);
+		bus.register(listener);
+		for (int i = 0; i < count; i++) {
+			bus.post(new Price("BID", i));
+		}
+		assertTrue(listener.done.await(10, TimeUnit.SECONDS));
+		for (int i = 0; i < count; i++) {
+			assertEquals(i, (int) listener.received.get(i));
+		}
+		int total = 0;
+		for (int size : listener.batchSizes) {
+			total += size;
+		}
+		assertEquals(count, total);
+	}
+}
@@ -0,0 +1,131 @@
+package c0.util.eventbus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import c0.util.eventbus.annotations.Subscribe;
+import c0.util.eventbus.annotations.Subscribe.ThreadMode;
+import c0.util.eventbus.events.BaseEvent;
+import c0.util.eventbus.events.Keyed;
+
+public class ConflationTest {
+
+	public static class Price extends BaseEvent implements Keyed {
+		final String symbol;
+		final int value;
+
+		public Price(String symbol, int value) {
+			super(() -> "PRICE");
+			this.symbol = symbol;
+			this.value = value;
+		}
+
+		@Override
+		public Object getKey() {
+			return symbol;
+		}
+
+		@Override
+		public void reset() {
+		}
+	}
+
+	public static class Tick extends BaseEvent {
+		public Tick() {
+			super(() -> "TICK");
+		}
+
+		@Override
+		public void reset() {
+		}
+	}
+
+	/**
+	 * Holds the first delivery until the gate opens, so the following posts wait
+	 * in its mailbox
+	 */
+	public static class Latest {
+		final List<String> received = Collections.synchronizedList(new ArrayList<>());
+		final CountDownLatch entered = new CountDownLatch(1);
+		final CountDownLatch gate = new CountDownLatch(1);
+
+		@Subscribe(threadMode = ThreadMode.SERIAL, conflate = true)
+		public void onPrice(Price price) throws InterruptedException {
+			entered.countDown();
+			gate.await();
+			received.add(price.symbol + price.value);
+		}
+	}
+
+	public static class ConflatingTicks {
+		@Subscribe(threadMode = ThreadMode.SERIAL, conflate = true)
+		public void onTick(Tick tick) {
+		}
+	}
+
+	private EventBus bus;
+
+	@Before
+	public void setup() {
+		bus = new EventBus();
+	}
+
+	@After
+	public void teardown() {
+		bus.shutdown();
+	}
+
+	// Every key keeps its newest value, in the position its first pending value
+	// was queued at
+	@Test
+	public void keepsTheNewestPendingEventPerKey() throws Exception {
+		Latest listener = new Latest();
+		bus.register(listener);
+		bus.post(new Price("AAA", 0));
+		assertTrue(listener.entered.await(10, TimeUnit.SECONDS));
+
+		bus.post(new Price("AAA", 1));
+		bus.post(new Price("BBB", 1));
+		bus.post(new Price("AAA", 2));
+		bus.post(new Price("CCC", 1));
+		bus.post(new Price("BBB", 2));
+		bus.post(new Price("AAA", 3));
+		listener.gate.countDown();
+		bus.postAsync(new Price("DDD", 1)).get(10, TimeUnit.SECONDS);
+
+		assertEquals(List.of("AAA0", "AAA3", "BBB2", "CCC1", "DDD1"), listener.received);
+		assertEquals(3, bus.getSubscriberStats().get(0).getConflatedCount());
+	}
+
+	@Test
+	public void deliveredEventsAreNotConflated() throws Exception {
+		Latest listener = new Latest();
+		listener.gate.countDown();
+		bus.register(listener);
+		for (int i = 0; i < 3; i++) {
+			bus.postAsync(new Price("AAA", i)).get(10, TimeUnit.SECONDS);
+		}
+		assertEquals(List.of("AAA0", "AAA1", "AAA2"), listener.received);
+	}
+
+	@Test
+	public void rejectsConflatingSubscribersOfUnkeyedEvents() {
+		try {
+			bus.register(new ConflatingTicks());
+			fail("Registered a conflating subscriber of unkeyed events");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains(Keyed.class.getName()));
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package c0.util.eventbus;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import c0.util.eventbus.annotations.Subscribe;
+import c0.util.eventbus.events.BaseEvent;
+import c0.util.eventbus.events.Event;
+
+public class DispatchTableTest {
+
+	public interface Audited {
+	}
+
+	public interface Billable extends Audited {
+	}
+
+	public static class Order extends BaseEvent implements Audited {
+		public Order() {
+			super(() -> "ORDER");
+		}
+
+		@Override
+		public void reset() {
+		}
+	}
+
+	// Reaches Audited both through Order and through Billable
+	public static class Invoice extends Order implements Billable {
+		@Override
+		public void reset() {
+		}
+	}
+
+	public static class Listener {
+		final List<String> received = new ArrayList<>();
+
+		@Subscribe(priority = 1)
+		public void onEvent(Event event) {
+			received.add("event");
+		}
+
+		@Subscribe
+		public void onAudited(Audited audited) {
+			received.add("audited");
+		}
+
+		@Subscribe
+		public void onInvoice(Invoice invoice) {
+			received.add("invoice");
+		}
+
+		@Subscribe(priority = 2)
+		public void onOrder(Order order) {
+			received.add("order");
+		}
+	}
+
+	public static class Late {
+		final List<String> received = new ArrayList<>();
+
+		@Subscribe
+		public void onOrder(Order order) {
+			received.add("late");
+		}
+	}
+
+	private EventBus bus;
+
+	@Before
+	public void setup() {
+		bus = new EventBus();
+	}
+
+	@After
+	public void teardown() {
+		bus.shutdown();
+	}
+
+	// One flattened table: priorities apply across the whole hierarchy and equal
+	// priorities keep the most specific type first
+	@Test
+	public void flattensTheHierarchyIntoOnePriorityOrder() {
+		Listener listener = new Listener();
+		bus.register(listener);
+		bus.post(new Invoice());
+		assertEquals(List.of("order", "event", "invoice", "audited"), listener.received);
+	}
+
+	@Test
+	public void deliversInterfacesReachedTwiceOnce() {
+		Listener listener = new Listener();
+		bus.register(listener);
+		bus.post(new Invoice());
+		assertEquals(1, listener.received.stream().filter("audited"::equals).count());
+	}
+
+	@Test
+	public void reusesTheTableAcrossPosts() {
+		Listener listener = new Listener();
+		bus.register(listener);
+		bus.post(new Order());
+		bus.post(new Order());
+		assertEquals(List.of("order", "event", "audited", "order", "event", "audited"), listener.received);
+	}
+
+	// A listener registered by a subscriber only sees the next post, the event
+	// being dispatched keeps the table it started with
+	@Test
+	public void registrationDuringDispatchOnlyAffectsLaterPosts() {
+		Late late = new Late();
+		bus.register(new Object() {
+			@Subscribe
+			public void onOrder(Order order) {
+				bus.register(late);
+			}
+		});
+		bus.post(new Order());
+		assertEquals(List.of(), late.received);
+		bus.post(new Order());
+		assertEquals(List.of("late"), late.received);
+	}
+
+	@Test
+	public void unregisteredListenersLeaveTheTable() {
+		Listener listener = new Listener();
+		bus.register(listener);
+		bus.post(new Order());
+		bus.unregister(listener);
+		bus.post(new Invoice());
+		assertEquals(List.of("order", "event", "audited"), listener.received);
+	}
+}
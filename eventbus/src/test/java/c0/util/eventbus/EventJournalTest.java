@@ -0,0 +1,300 @@
+package c0.util.eventbus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import c0.util.eventbus.annotations.Subscribe;
+import c0.util.eventbus.codec.CodecRegistry;
+import c0.util.eventbus.codec.EventCodec;
+import c0.util.eventbus.events.BaseEvent;
+
+public class EventJournalTest {
+
+	private static final int EVENTS = 10_000;
+	private static final int SEGMENT_SIZE = 8192;
+
+	public static class Order extends BaseEvent {
+		final int id;
+		final String item;
+
+		public Order(int id, String item) {
+			super(() -> "ORDER");
+			this.id = id;
+			this.item = item;
+		}
+
+		@Override
+		public void reset() {
+		}
+	}
+
+	public static class OrderCodec implements EventCodec<Order> {
+		@Override
+		public void encode(Order event, ByteBuffer buffer) {
+			buffer.putInt(event.id);
+			EventCodec.putString(buffer, event.item);
+		}
+
+		@Override
+		public Order decode(ByteBuffer buffer) {
+			return new Order(buffer.getInt(), EventCodec.getString(buffer));
+		}
+	}
+
+	public static class Cancel extends BaseEvent {
+		final int orderId;
+
+		public Cancel(int orderId) {
+			super(() -> "CANCEL");
+			this.orderId = orderId;
+		}
+
+		@Override
+		public void reset() {
+		}
+	}
+
+	public static class CancelCodec implements EventCodec<Cancel> {
+		@Override
+		public void encode(Cancel event, ByteBuffer buffer) {
+			buffer.putInt(event.orderId);
+		}
+
+		@Override
+		public Cancel decode(ByteBuffer buffer) {
+			return new Cancel(buffer.getInt());
+		}
+	}
+
+	public static class History {
+		final List<String> received = new ArrayList<>();
+
+		@Subscribe
+		public void onOrder(Order order) {
+			received.add("order " + order.id);
+		}
+
+		@Subscribe
+		public void onCancel(Cancel cancel) {
+			received.add("cancel " + cancel.orderId);
+		}
+	}
+
+	public static class Orders {
+		final List<Order> received = new ArrayList<>();
+
+		@Subscribe
+		public void onOrder(Order order) {
+			received.add(order);
+		}
+	}
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path directory;
+	private EventBus bus;
+	private EventJournal journal;
+
+	@Before
+	public void setup() throws IOException {
+		directory = folder.newFolder("journal").toPath();
+		// Files that only look like segments are left alone
+		Files.createFile(directory.resolve("notes.log"));
+		bus = new EventBus();
+	}
+
+	@After
+	public void teardown() {
+		if (journal != null) {
+			journal.close();
+		}
+		bus.shutdown();
+	}
+
+	private EventJournal open(EventBus bus) throws IOException {
+		CodecRegistry codecs = new CodecRegistry().register(1, Order.class, new OrderCodec())
+				.register(2, Cancel.class, new CancelCodec());
+		return new EventJournal(bus, codecs, directory, SEGMENT_SIZE, Duration.ofMillis(10)).journal(Order.class);
+	}
+
+	private static String item(int id) {
+		return "item-" + id;
+	}
+
+	private void appendAll() throws IOException {
+		journal = open(bus);
+		for (int i = 0; i < EVENTS; i++) {
+			bus.post(new Order(i, item(i)));
+		}
+		assertEquals(EVENTS, journal.getNextSequence());
+		journal.close();
+		bus.shutdown();
+	}
+
+	private long segmentCount() throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.filter(file -> file.getFileName().toString().matches("\\d{20}\\.log")).count();
+		}
+	}
+
+	@Test
+	public void replaysEverythingAfterReopening() throws IOException {
+		appendAll();
+		assertTrue(segmentCount() > 10);
+
+		bus = new EventBus();
+		Orders orders = new Orders();
+		bus.register(orders);
+		journal = open(bus);
+		assertEquals(EVENTS, journal.getNextSequence());
+
+		assertEquals(EVENTS, journal.replay(0));
+		assertEquals(EVENTS, orders.received.size());
+		for (int i = 0; i < EVENTS; i++) {
+			assertEquals(i, orders.received.get(i).id);
+			assertEquals(item(i), orders.received.get(i).item);
+		}
+		// Replayed events were not appended again
+		assertEquals(EVENTS, journal.getNextSequence());
+	}
+
+	@Test
+	public void replaysFromASequenceInALaterSegment() throws IOException {
+		appendAll();
+
+		bus = new EventBus();
+		Orders orders = new Orders();
+		bus.register(orders);
+		journal = open(bus);
+
+		int from = EVENTS - 1234;
+		assertEquals(EVENTS - from, journal.replay(from));
+		assertEquals(from, orders.received.get(0).id);
+		assertEquals(EVENTS - 1, orders.received.get(orders.received.size() - 1).id);
+		assertEquals(0, journal.replay(EVENTS));
+	}
+
+	@Test
+	public void continuesAppendingAfterReopening() throws IOException {
+		appendAll();
+
+		bus = new EventBus();
+		journal = open(bus);
+		bus.post(new Order(EVENTS, item(EVENTS)));
+		assertEquals(EVENTS + 1, journal.getNextSequence());
+
+		Orders orders = new Orders();
+		bus.register(orders);
+		assertEquals(2, journal.replay(EVENTS - 1));
+		assertEquals(EVENTS - 1, orders.received.get(0).id);
+		assertEquals(EVENTS, orders.received.get(1).id);
+		assertEquals(EVENTS + 1, journal.replaySince(0));
+	}
+
+	@Test
+	public void replaysEventTypesInJournalOrder() throws IOException {
+		journal = open(bus).journal(Cancel.class);
+		List<String> posted = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			bus.post(new Order(i, item(i)));
+			posted.add("order " + i);
+			if (i % 3 == 0) {
+				bus.post(new Cancel(i));
+				posted.add("cancel " + i);
+			}
+		}
+		journal.close();
+		bus.shutdown();
+
+		bus = new EventBus();
+		History history = new History();
+		bus.register(history);
+		journal = open(bus);
+		assertEquals(posted.size(), journal.replay(0));
+		assertEquals(posted, history.received);
+	}
+
+	@Test
+	public void ignoresATornRecordAtTheEnd() throws IOException {
+		journal = open(bus);
+		for (int i = 0; i < 3; i++) {
+			bus.post(new Order(i, item(i)));
+		}
+		journal.close();
+		bus.shutdown();
+
+		// Flip a payload byte of the last record, as if the crash came before it was
+		// written out completely
+		Path segment = directory.resolve(String.format("%020d.log", 0));
+		ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(segment)).order(ByteOrder.BIG_ENDIAN);
+		int last = 0;
+		for (int offset = 0; data.getInt(offset) != 0; offset += data.getInt(offset)) {
+			last = offset;
+		}
+		int payload = last + data.getInt(last) - 1;
+		data.put(payload, (byte) ~data.get(payload));
+		Files.write(segment, data.array());
+
+		bus = new EventBus();
+		Orders orders = new Orders();
+		bus.register(orders);
+		journal = open(bus);
+		assertEquals(2, journal.getNextSequence());
+		assertEquals(2, journal.replay(0));
+		assertEquals(1, orders.received.get(1).id);
+
+		// The torn record is overwritten
+		bus.post(new Order(3, item(3)));
+		assertEquals(3, journal.getNextSequence());
+		orders.received.clear();
+		assertEquals(3, journal.replay(0));
+		assertEquals(3, orders.received.get(2).id);
+	}
+
+	@Test
+	public void concurrentReplaysAreNotAppendedAgain() throws Exception {
+		appendAll();
+
+		bus = new EventBus();
+		journal = open(bus);
+		CyclicBarrier start = new CyclicBarrier(2);
+		List<Throwable> failures = new CopyOnWriteArrayList<>();
+		List<Thread> replays = new ArrayList<>();
+		for (int i = 0; i < 2; i++) {
+			Thread replay = new Thread(() -> {
+				try {
+					start.await();
+					assertEquals(EVENTS, journal.replay(0));
+				} catch (Throwable e) {
+					failures.add(e);
+				}
+			});
+			replay.start();
+			replays.add(replay);
+		}
+		for (Thread replay : replays) {
+			replay.join();
+		}
+		assertTrue(failures.toString(), failures.isEmpty());
+		assertEquals(EVENTS, journal.getNextSequence());
+	}
+}
@@ -0,0 +1,183 @@
+package c0.util.eventbus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import c0.util.eventbus.annotations.Subscribe;
+import c0.util.eventbus.events.BaseEvent;
+
+public class InstrumentationTest {
+
+	public static class Work extends BaseEvent {
+		final long sleepMillis;
+		final boolean fail;
+
+		public Work(long sleepMillis, boolean fail) {
+			super(() -> "WORK");
+			this.sleepMillis = sleepMillis;
+			this.fail = fail;
+		}
+
+		@Override
+		public void reset() {
+		}
+	}
+
+	public static class Worker {
+		@Subscribe
+		public void onWork(Work work) throws InterruptedException {
+			if (work.sleepMillis > 0) {
+				Thread.sleep(work.sleepMillis);
+			}
+			if (work.fail) {
+				throw new IllegalStateException("Failed for the test");
+			}
+		}
+	}
+
+	public static class Recorder implements MetricsListener {
+		final AtomicInteger invocations = new AtomicInteger();
+		final AtomicInteger errors = new AtomicInteger();
+		final List<Object> slowEvents = new CopyOnWriteArrayList<>();
+
+		@Override
+		public void onInvocation(Object listener, SubscriberMethod method, long durationNanos, Exception error) {
+			invocations.incrementAndGet();
+			if (error != null) {
+				errors.incrementAndGet();
+			}
+		}
+
+		@Override
+		public void onSlowHandler(Object listener, SubscriberMethod method, Object event, long durationNanos) {
+			assertTrue(durationNanos >= Duration.ofMillis(20).toNanos());
+			slowEvents.add(event);
+		}
+	}
+
+	private EventBus bus;
+
+	@Before
+	public void setup() {
+		bus = new EventBus();
+		bus.register(new Worker());
+	}
+
+	@After
+	public void teardown() {
+		bus.shutdown();
+	}
+
+	private SubscriberStats stats() {
+		List<SubscriberStats> stats = bus.getSubscriberStats();
+		assertEquals(1, stats.size());
+		return stats.get(0);
+	}
+
+	@Test
+	public void countsInvocationsAndErrors() {
+		bus.enableInstrumentation(new Instrumentation());
+		for (int i = 0; i < 10; i++) {
+			bus.post(new Work(0, i % 5 == 0));
+		}
+		assertEquals(10, stats().getInvocationCount());
+		assertEquals(2, stats().getErrorCount());
+	}
+
+	@Test
+	public void recordsLatencyPercentiles() {
+		bus.enableInstrumentation(new Instrumentation());
+		for (int i = 0; i < 3; i++) {
+			bus.post(new Work(30, false));
+		}
+		long p50 = stats().getP50Nanos();
+		assertTrue(p50 >= Duration.ofMillis(28).toNanos());
+		assertTrue(stats().getP999Nanos() >= p50);
+	}
+
+	@Test
+	public void reportsSlowHandlersToTheListener() {
+		Recorder recorder = new Recorder();
+		bus.enableInstrumentation(new Instrumentation(Duration.ofMillis(20), recorder, false));
+		Work slow = new Work(40, false);
+		bus.post(new Work(0, false));
+		bus.post(slow);
+		bus.post(new Work(0, true));
+
+		assertEquals(3, recorder.invocations.get());
+		assertEquals(1, recorder.errors.get());
+		assertEquals(1, recorder.slowEvents.size());
+		assertSame(slow, recorder.slowEvents.get(0));
+	}
+
+	@Test
+	public void enablingAgainResetsAndDisablingStops() {
+		bus.enableInstrumentation(new Instrumentation());
+		bus.post(new Work(0, false));
+		bus.enableInstrumentation(new Instrumentation());
+		assertEquals(0, stats().getInvocationCount());
+		bus.post(new Work(0, false));
+		assertEquals(1, stats().getInvocationCount());
+
+		bus.disableInstrumentation();
+		bus.post(new Work(0, false));
+		assertEquals(0, stats().getInvocationCount());
+	}
+
+	@Test
+	public void rejectsNegativeSlowThresholds() {
+		try {
+			new Instrumentation(Duration.ofMillis(-1), null, false);
+			fail("Accepted a negative threshold");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+	}
+
+	@Test
+	public void histogramKeepsSmallValuesExact() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 20; i++) {
+			histogram.record(i);
+		}
+		assertEquals(20, histogram.count());
+		assertEquals(10, histogram.percentile(50));
+		assertEquals(20, histogram.percentile(100));
+	}
+
+	@Test
+	public void histogramStaysWithinItsPrecision() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		long[] values = { 1_000, 123_456, 9_876_543, 1_000_000_000L };
+		for (long value : values) {
+			LatencyHistogram single = new LatencyHistogram();
+			single.record(value);
+			long reported = single.percentile(50);
+			assertTrue(value + " reported as " + reported, Math.abs(reported - value) <= value * 0.065);
+			histogram.record(value);
+		}
+		assertEquals(4, histogram.count());
+		assertTrue(histogram.percentile(25) < histogram.percentile(75));
+	}
+
+	@Test
+	public void histogramClampsOutOfRangeValues() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.percentile(99));
+		histogram.record(-5);
+		assertEquals(0, histogram.percentile(100));
+		histogram.record(Long.MAX_VALUE);
+		assertTrue(histogram.percentile(100) > Duration.ofMinutes(15).toNanos());
+	}
+}
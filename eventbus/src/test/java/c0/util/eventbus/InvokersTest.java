@@ -0,0 +1,84 @@
+package c0.util.eventbus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import c0.util.eventbus.annotations.Subscribe;
+
+public class InvokersTest {
+
+	public static class Listener {
+		final List<String> received = new ArrayList<>();
+
+		public void onString(String event) {
+			received.add(event);
+		}
+
+		public void onFailure(String event) throws IOException {
+			throw new IOException(event);
+		}
+	}
+
+	public static class StaticListener {
+		static final List<String> received = new ArrayList<>();
+
+		public static void onString(String event) {
+			received.add(event);
+		}
+	}
+
+	public static class Subscribed {
+		@Subscribe
+		public void onString(String event) {
+		}
+	}
+
+	@Test
+	public void generatesADirectInvokerForInstanceMethods() throws Exception {
+		Invoker invoker = Invokers.bind(Listener.class.getMethod("onString", String.class));
+		Listener listener = new Listener();
+		invoker.invoke(listener, "a");
+		invoker.invoke(listener, "b");
+		assertEquals(List.of("a", "b"), listener.received);
+		// The lambda metafactory spins a hidden class instead of going through
+		// Method.invoke
+		assertTrue(invoker.getClass().isHidden());
+	}
+
+	@Test
+	public void invokesStaticMethods() throws Exception {
+		Invoker invoker = Invokers.bind(StaticListener.class.getMethod("onString", String.class));
+		StaticListener.received.clear();
+		invoker.invoke(null, "a");
+		assertEquals(List.of("a"), StaticListener.received);
+	}
+
+	@Test
+	public void propagatesCheckedExceptionsUnwrapped() throws Exception {
+		Invoker invoker = Invokers.bind(Listener.class.getMethod("onFailure", String.class));
+		try {
+			invoker.invoke(new Listener(), "broken");
+			fail("Expected the subscriber's exception");
+		} catch (IOException e) {
+			assertEquals("broken", e.getMessage());
+		}
+	}
+
+	// Binding happens once per listener class, through the finder's ClassValue
+	@Test
+	public void bindsOncePerListenerClass() {
+		SubscriberMethod[] first = SubscriberMethodFinder.find(Subscribed.class);
+		SubscriberMethod[] second = SubscriberMethodFinder.find(Subscribed.class);
+		assertSame(first, second);
+		assertEquals(1, first.length);
+		assertEquals(String.class, first[0].getEventType());
+	}
+}
@@ -0,0 +1,287 @@
+package c0.util.eventbus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Test;
+
+import c0.util.eventbus.annotations.Subscribe;
+import c0.util.eventbus.annotations.Subscribe.Overflow;
+import c0.util.eventbus.annotations.Subscribe.ThreadMode;
+import c0.util.eventbus.events.BaseEvent;
+
+public class MailboxTest {
+
+	public static class Step extends BaseEvent {
+		int number;
+
+		public Step() {
+			super(() -> "STEP");
+		}
+
+		public Step(int number) {
+			this();
+			this.number = number;
+		}
+
+		@Override
+		public void reset() {
+			number = -1;
+		}
+	}
+
+	/**
+	 * Serial subscriber with a mailbox of two that holds the first event until the
+	 * gate opens, so the following posts pile up in its mailbox
+	 */
+	public abstract static class Gated {
+		final List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+		final CountDownLatch entered = new CountDownLatch(1);
+		final CountDownLatch gate = new CountDownLatch(1);
+
+		void handle(Step step) throws InterruptedException {
+			entered.countDown();
+			gate.await();
+			received.add(step.number);
+		}
+	}
+
+	public static class Blocking extends Gated {
+		@Subscribe(threadMode = ThreadMode.SERIAL, queueCapacity = 2, overflow = Overflow.BLOCK)
+		public void onStep(Step step) throws InterruptedException {
+			handle(step);
+		}
+	}
+
+	public static class DropNewest extends Gated {
+		@Subscribe(threadMode = ThreadMode.SERIAL, queueCapacity = 2, overflow = Overflow.DROP_NEWEST)
+		public void onStep(Step step) throws InterruptedException {
+			handle(step);
+		}
+	}
+
+	public static class DropOldest extends Gated {
+		@Subscribe(threadMode = ThreadMode.SERIAL, queueCapacity = 2, overflow = Overflow.DROP_OLDEST)
+		public void onStep(Step step) throws InterruptedException {
+			handle(step);
+		}
+	}
+
+	public static class Failing extends Gated {
+		@Subscribe(threadMode = ThreadMode.SERIAL, queueCapacity = 2, overflow = Overflow.FAIL)
+		public void onStep(Step step) throws InterruptedException {
+			handle(step);
+		}
+	}
+
+	public static class Chain extends BaseEvent {
+		public Chain() {
+			super(() -> "CHAIN");
+		}
+
+		@Override
+		public void reset() {
+		}
+	}
+
+	/**
+	 * Asynchronous subscriber that posts on to a blocking subscriber with a mailbox
+	 * of one, from the same pool that drains it
+	 */
+	public static class Relay {
+		final List<String> outcomes = Collections.synchronizedList(new ArrayList<>());
+		final CountDownLatch relayed = new CountDownLatch(1);
+		final CountDownLatch chained = new CountDownLatch(1);
+		private final EventBus bus;
+
+		Relay(EventBus bus) {
+			this.bus = bus;
+		}
+
+		@Subscribe(threadMode = ThreadMode.ASYNC)
+		public void onStep(Step step) {
+			for (int i = 0; i < 2; i++) {
+				try {
+					bus.post(new Chain());
+					outcomes.add("queued");
+				} catch (IllegalStateException e) {
+					outcomes.add("full");
+				}
+			}
+			relayed.countDown();
+		}
+
+		@Subscribe(threadMode = ThreadMode.SERIAL, queueCapacity = 1, overflow = Overflow.BLOCK)
+		public void onChain(Chain chain) {
+			chained.countDown();
+		}
+	}
+
+	public static class Serial {
+		final List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+		final CountDownLatch delivered = new CountDownLatch(1);
+
+		@Subscribe(threadMode = ThreadMode.SERIAL)
+		public void onStep(Step step) {
+			received.add(step.number);
+			delivered.countDown();
+		}
+	}
+
+	private EventBus bus = new EventBus();
+
+	@After
+	public void teardown() {
+		bus.shutdown();
+	}
+
+	private void fill(Gated listener, int posts) throws InterruptedException {
+		bus.register(listener);
+		bus.post(new Step(1));
+		assertTrue(listener.entered.await(10, TimeUnit.SECONDS));
+		for (int i = 2; i <= posts; i++) {
+			bus.post(new Step(i));
+		}
+	}
+
+	private void awaitReceived(Gated listener, int count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10000;
+		while (listener.received.size() < count && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+	}
+
+	@Test
+	public void blockWaitsForRoom() throws InterruptedException {
+		Blocking listener = new Blocking();
+		fill(listener, 3);
+		Thread poster = new Thread(() -> bus.post(new Step(4)));
+		poster.start();
+		poster.join(200);
+		assertTrue(poster.isAlive());
+
+		listener.gate.countDown();
+		poster.join(10000);
+		awaitReceived(listener, 4);
+		assertEquals(List.of(1, 2, 3, 4), listener.received);
+	}
+
+	@Test
+	public void dropNewestKeepsQueuedEvents() throws InterruptedException {
+		DropNewest listener = new DropNewest();
+		fill(listener, 5);
+		assertEquals(2, bus.getSubscriberStats().get(0).getDroppedCount());
+		listener.gate.countDown();
+		awaitReceived(listener, 3);
+		assertEquals(List.of(1, 2, 3), listener.received);
+	}
+
+	@Test
+	public void dropOldestKeepsNewestEvents() throws InterruptedException {
+		DropOldest listener = new DropOldest();
+		fill(listener, 5);
+		assertEquals(2, bus.getSubscriberStats().get(0).getDroppedCount());
+		listener.gate.countDown();
+		awaitReceived(listener, 3);
+		assertEquals(List.of(1, 4, 5), listener.received);
+	}
+
+	// The relay holds the only pool thread, so waiting for room would never end
+	@Test
+	public void blockFailsForPostersDeliveringFromAMailbox() throws InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(1);
+		bus = new EventBus(executor);
+		Relay relay = new Relay(bus);
+		bus.register(relay);
+		bus.post(new Step(1));
+		assertTrue(relay.relayed.await(10, TimeUnit.SECONDS));
+		assertEquals(List.of("queued", "full"), relay.outcomes);
+		assertTrue(relay.chained.await(10, TimeUnit.SECONDS));
+		executor.shutdown();
+	}
+
+	@Test
+	public void failThrowsToThePoster() throws InterruptedException {
+		Failing listener = new Failing();
+		fill(listener, 3);
+		try {
+			bus.post(new Step(4));
+			fail("Full mailbox did not throw");
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+		listener.gate.countDown();
+		awaitReceived(listener, 3);
+		assertEquals(List.of(1, 2, 3), listener.received);
+	}
+
+	@Test
+	public void rejectedDeliveryDoesNotStallTheMailbox() throws InterruptedException {
+		AtomicBoolean rejectNext = new AtomicBoolean(true);
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<>()) {
+			@Override
+			public void execute(Runnable command) {
+				if (rejectNext.getAndSet(false)) {
+					throw new RejectedExecutionException("Rejected for the test");
+				}
+				super.execute(command);
+			}
+		};
+		bus = new EventBus(executor);
+		Serial listener = new Serial();
+		bus.register(listener);
+		try {
+			bus.post(new Step(1));
+			fail("Rejected delivery did not throw");
+		} catch (RejectedExecutionException e) {
+			// Expected
+		}
+		bus.post(new Step(2));
+		assertTrue(listener.delivered.await(10, TimeUnit.SECONDS));
+		assertEquals(List.of(2), listener.received);
+		executor.shutdown();
+	}
+
+	@Test
+	public void rejectedDeliveryReleasesPooledEventsAndFailsCompletions() throws InterruptedException {
+		bus.register(new Serial());
+		bus.shutdown();
+
+		Step step = bus.obtain(Step.class);
+		try {
+			bus.postPooled(step);
+			fail("Rejected delivery did not throw");
+		} catch (RejectedExecutionException e) {
+			// Expected
+		}
+		// Released back into this thread's magazine
+		assertSame(step, bus.obtain(Step.class));
+
+		CompletableFuture<Void> completion = bus.postAsync(new Step(1));
+		try {
+			completion.get(10, TimeUnit.SECONDS);
+			fail("Rejected delivery completed normally");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause().getCause() instanceof RejectedExecutionException);
+		} catch (Exception e) {
+			throw new AssertionError(e);
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package c0.util.eventbus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import c0.util.eventbus.annotations.Subscribe;
+import c0.util.eventbus.annotations.Subscribe.ThreadMode;
+import c0.util.eventbus.events.BaseEvent;
+import c0.util.eventbus.events.Keyed;
+
+public class PartitionTest {
+
+	public static class Update extends BaseEvent implements Keyed {
+		final int account;
+		final int sequence;
+
+		public Update(int account, int sequence) {
+			super(() -> "UPDATE");
+			this.account = account;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public Object getKey() {
+			return account;
+		}
+
+		@Override
+		public void reset() {
+		}
+	}
+
+	public static class Recorder {
+		final Map<Integer, List<Integer>> sequences = new ConcurrentHashMap<>();
+		final Map<Integer, Set<Thread>> threads = new ConcurrentHashMap<>();
+		final CountDownLatch done;
+
+		Recorder(int expected) {
+			done = new CountDownLatch(expected);
+		}
+
+		@Subscribe(threadMode = ThreadMode.PARTITIONED)
+		public void onUpdate(Update update) {
+			// Only ever touched by the partition of the account
+			sequences.computeIfAbsent(update.account, k -> new ArrayList<>()).add(update.sequence);
+			threads.computeIfAbsent(update.account, k -> ConcurrentHashMap.newKeySet()).add(Thread.currentThread());
+			done.countDown();
+		}
+	}
+
+	/**
+	 * The first account waits until the second has been handled, which only
+	 * finishes if they run on different partitions at the same time
+	 */
+	public static class Waiting {
+		final CountDownLatch second = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(2);
+
+		@Subscribe(threadMode = ThreadMode.PARTITIONED)
+		public void onUpdate(Update update) throws InterruptedException {
+			if (update.account != 0) {
+				second.countDown();
+				done.countDown();
+			} else if (second.await(10, TimeUnit.SECONDS)) {
+				done.countDown();
+			}
+		}
+	}
+
+	private EventBus bus;
+
+	@After
+	public void teardown() {
+		if (bus != null) {
+			bus.shutdown();
+		}
+	}
+
+	@Test
+	public void deliversEachKeyInOrderOnOnePartition() throws InterruptedException {
+		bus = new EventBus(4);
+		int accounts = 16;
+		int updates = 500;
+		Recorder recorder = new Recorder(accounts * updates);
+		bus.register(recorder);
+		for (int sequence = 0; sequence < updates; sequence++) {
+			for (int account = 0; account < accounts; account++) {
+				bus.post(new Update(account, sequence));
+			}
+		}
+		assertTrue(recorder.done.await(10, TimeUnit.SECONDS));
+		for (int account = 0; account < accounts; account++) {
+			List<Integer> received = recorder.sequences.get(account);
+			assertEquals(updates, received.size());
+			for (int sequence = 0; sequence < updates; sequence++) {
+				assertEquals(sequence, (int) received.get(sequence));
+			}
+			assertEquals(1, recorder.threads.get(account).size());
+		}
+	}
+
+	// Integer keys 0 and 1 hash to partitions 0 and 1
+	@Test
+	public void deliversDifferentKeysInParallel() throws InterruptedException {
+		bus = new EventBus(2);
+		Waiting waiting = new Waiting();
+		bus.register(waiting);
+		bus.post(new Update(0, 0));
+		bus.post(new Update(1, 0));
+		assertTrue(waiting.done.await(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void rejectsBusesWithoutPartitions() {
+		try {
+			bus = new EventBus(0);
+			fail("Created a bus without partitions");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+	}
+}
@@ -0,0 +1,198 @@
+package c0.util.eventbus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import c0.util.eventbus.annotations.Subscribe;
+import c0.util.eventbus.annotations.Subscribe.ThreadMode;
+import c0.util.eventbus.events.BaseEvent;
+import c0.util.eventbus.events.Event;
+
+public class PooledPostingTest {
+
+	public static class Fill extends BaseEvent {
+		int quantity;
+		volatile int resets;
+
+		public Fill() {
+			super(() -> "FILL");
+		}
+
+		@Override
+		public void reset() {
+			quantity = 0;
+			resets++;
+		}
+	}
+
+	// Separate classes per test, the object pool is shared by the whole JVM
+	public static class AsyncFill extends Fill {
+	}
+
+	public static class RetainedFill extends Fill {
+	}
+
+	// Implements the interface without counting its references
+	public static class Uncounted implements Event {
+		int resets;
+
+		@Override
+		public Type getType() {
+			return () -> "UNCOUNTED";
+		}
+
+		@Override
+		public String getTimestamp() {
+			return "";
+		}
+
+		@Override
+		public Uncounted init() {
+			return this;
+		}
+
+		@Override
+		public void reset() {
+			resets++;
+		}
+	}
+
+	public static class Recorder {
+		final List<Integer> quantities = new CopyOnWriteArrayList<>();
+
+		@Subscribe
+		public void onFill(Fill fill) {
+			quantities.add(fill.quantity);
+		}
+	}
+
+	public static class Gated {
+		final CountDownLatch entered = new CountDownLatch(1);
+		final CountDownLatch gate = new CountDownLatch(1);
+		final CountDownLatch finished = new CountDownLatch(1);
+
+		@Subscribe(threadMode = ThreadMode.ASYNC)
+		public void onFill(AsyncFill fill) throws InterruptedException {
+			entered.countDown();
+			gate.await();
+			finished.countDown();
+		}
+	}
+
+	public static class Retaining {
+		RetainedFill kept;
+
+		@Subscribe
+		public void onFill(RetainedFill fill) {
+			kept = (RetainedFill) fill.retain();
+		}
+	}
+
+	private EventBus bus;
+
+	@Before
+	public void setup() {
+		bus = new EventBus();
+	}
+
+	@After
+	public void teardown() {
+		bus.shutdown();
+	}
+
+	@Test
+	public void postedEventIsReusedByTheNextObtain() {
+		Recorder recorder = new Recorder();
+		bus.register(recorder);
+
+		Fill first = bus.obtain(Fill.class);
+		first.quantity = 10;
+		bus.postPooled(first);
+		Fill second = bus.obtain(Fill.class);
+		second.quantity = 20;
+		bus.postPooled(second);
+
+		assertSame(first, second);
+		assertEquals(List.of(10, 20), recorder.quantities);
+		assertEquals(0, second.quantity);
+	}
+
+	@Test
+	public void initializerFillsTheObtainedEvent() {
+		Recorder recorder = new Recorder();
+		bus.register(recorder);
+		bus.postPooled(Fill.class, fill -> fill.quantity = 7);
+		assertEquals(List.of(7), recorder.quantities);
+	}
+
+	@Test
+	public void handedOffDeliveryKeepsTheEventUntilItFinishes() throws InterruptedException {
+		Gated gated = new Gated();
+		bus.register(gated);
+		AsyncFill fill = bus.obtain(AsyncFill.class);
+		int resets = fill.resets;
+		bus.postPooled(fill);
+		assertTrue(gated.entered.await(10, TimeUnit.SECONDS));
+
+		assertEquals(1, fill.referenceCount());
+		assertNotSame(fill, bus.obtain(AsyncFill.class));
+
+		gated.gate.countDown();
+		assertTrue(gated.finished.await(10, TimeUnit.SECONDS));
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (fill.resets == resets && System.nanoTime() < deadline) {
+			Thread.yield();
+		}
+		assertEquals(resets + 1, fill.resets);
+		assertEquals(0, fill.referenceCount());
+	}
+
+	@Test
+	public void subscriberRetainingTheEventKeepsItOutOfThePool() {
+		Retaining retaining = new Retaining();
+		bus.register(retaining);
+		RetainedFill fill = bus.obtain(RetainedFill.class);
+		int resets = fill.resets;
+		bus.postPooled(fill);
+
+		assertSame(fill, retaining.kept);
+		assertEquals(1, fill.referenceCount());
+		assertEquals(resets, fill.resets);
+		assertNotSame(fill, bus.obtain(RetainedFill.class));
+
+		retaining.kept.release();
+		assertEquals(resets + 1, fill.resets);
+		assertEquals(0, fill.referenceCount());
+	}
+
+	@Test
+	public void eventsWithoutAReferenceCountAreRejected() {
+		Recorder recorder = new Recorder();
+		bus.register(recorder);
+		Uncounted event = new Uncounted();
+		try {
+			bus.postPooled(event);
+			fail("Posted pooled without a reference count");
+		} catch (IllegalArgumentException expected) {
+		}
+		// Still the caller's, not returned to the pool
+		assertEquals(0, event.resets);
+		try {
+			bus.obtain(Uncounted.class);
+			fail("Obtained without a reference count");
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+}
@@ -0,0 +1,208 @@
+package c0.util.eventbus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import c0.util.eventbus.annotations.Subscribe;
+import c0.util.eventbus.annotations.Subscribe.Overflow;
+import c0.util.eventbus.annotations.Subscribe.ThreadMode;
+import c0.util.eventbus.events.BaseEvent;
+
+public class PostAsyncTest {
+
+	public static class Job extends BaseEvent {
+		public Job() {
+			super(() -> "JOB");
+		}
+
+		@Override
+		public void reset() {
+		}
+	}
+
+	public static class Workers {
+		final AtomicInteger handled = new AtomicInteger();
+
+		@Subscribe
+		public void onPosting(Job job) {
+			handled.incrementAndGet();
+		}
+
+		@Subscribe(threadMode = ThreadMode.ASYNC)
+		public void onAsync(Job job) {
+			handled.incrementAndGet();
+		}
+
+		@Subscribe(threadMode = ThreadMode.SERIAL)
+		public void onSerial(Job job) {
+			handled.incrementAndGet();
+		}
+	}
+
+	public static class Failing {
+		@Subscribe(threadMode = ThreadMode.ASYNC)
+		public void onJob(Job job) {
+			throw new IllegalArgumentException("broken job");
+		}
+	}
+
+	public static class FailingToo {
+		@Subscribe
+		public void onJob(Job job) {
+			throw new UnsupportedOperationException("not now");
+		}
+	}
+
+	public static class Slow {
+		final CountDownLatch entered = new CountDownLatch(1);
+		final CountDownLatch gate = new CountDownLatch(1);
+
+		@Subscribe(threadMode = ThreadMode.SERIAL, queueCapacity = 1, overflow = Overflow.FAIL)
+		public void onJob(Job job) throws InterruptedException {
+			entered.countDown();
+			gate.await();
+		}
+	}
+
+	public static class Posting {
+		final AtomicInteger handled = new AtomicInteger();
+
+		@Subscribe
+		public void onJob(Job job) {
+			handled.incrementAndGet();
+		}
+	}
+
+	// Fails every delivery with something other than a rejection
+	private static class BrokenExecutor extends AbstractExecutorService {
+		@Override
+		public void execute(Runnable command) {
+			throw new IllegalStateException("broken executor");
+		}
+
+		@Override
+		public void shutdown() {
+		}
+
+		@Override
+		public List<Runnable> shutdownNow() {
+			return List.of();
+		}
+
+		@Override
+		public boolean isShutdown() {
+			return false;
+		}
+
+		@Override
+		public boolean isTerminated() {
+			return false;
+		}
+
+		@Override
+		public boolean awaitTermination(long timeout, TimeUnit unit) {
+			return false;
+		}
+	}
+
+	private final EventBus bus = new EventBus();
+
+	@After
+	public void teardown() {
+		bus.shutdown();
+	}
+
+	private static Throwable failureOf(CompletableFuture<Void> future) throws InterruptedException {
+		try {
+			future.get(10, TimeUnit.SECONDS);
+		} catch (ExecutionException e) {
+			return e.getCause();
+		} catch (TimeoutException e) {
+			fail("Future did not complete");
+		}
+		fail("Future completed normally");
+		return null;
+	}
+
+	@Test
+	public void completesOnceEveryThreadModeHasHandledTheEvent() throws Exception {
+		Workers workers = new Workers();
+		bus.register(workers);
+		bus.postAsync(new Job()).get(10, TimeUnit.SECONDS);
+		assertEquals(3, workers.handled.get());
+	}
+
+	@Test
+	public void waitsForSlowSubscribers() throws Exception {
+		Slow slow = new Slow();
+		bus.register(slow);
+		CompletableFuture<Void> future = bus.postAsync(new Job());
+		assertTrue(slow.entered.await(10, TimeUnit.SECONDS));
+		assertFalse(future.isDone());
+		slow.gate.countDown();
+		future.get(10, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void failingSubscriberFailsTheFutureAfterTheOthersFinish() throws Exception {
+		Workers workers = new Workers();
+		bus.register(workers);
+		bus.register(new Failing());
+		Throwable failure = failureOf(bus.postAsync(new Job()));
+		assertTrue(failure.getCause() instanceof IllegalArgumentException);
+		assertEquals(3, workers.handled.get());
+	}
+
+	@Test
+	public void everyFailureIsKept() throws Exception {
+		bus.register(new Failing());
+		bus.register(new FailingToo());
+		Throwable failure = failureOf(bus.postAsync(new Job()));
+		assertEquals(1, failure.getSuppressed().length);
+		assertTrue(failure.getMessage().startsWith("2 subscriber(s) failed"));
+	}
+
+	@Test
+	public void fullMailboxFailsTheFutureInsteadOfThrowing() throws Exception {
+		Slow slow = new Slow();
+		bus.register(slow);
+		CompletableFuture<Void> first = bus.postAsync(new Job());
+		assertTrue(slow.entered.await(10, TimeUnit.SECONDS));
+		CompletableFuture<Void> queued = bus.postAsync(new Job());
+		CompletableFuture<Void> overflowing = bus.postAsync(new Job());
+		assertTrue(failureOf(overflowing).getCause() instanceof Mailbox.FullException);
+
+		slow.gate.countDown();
+		first.get(10, TimeUnit.SECONDS);
+		queued.get(10, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void failedQueueingFailsTheFutureAndReachesTheOtherSubscribers() throws Exception {
+		EventBus broken = new EventBus(new BrokenExecutor());
+		try {
+			broken.register(new Failing());
+			Posting posting = new Posting();
+			broken.register(posting);
+			Throwable failure = failureOf(broken.postAsync(new Job()));
+			assertTrue(failure.getCause() instanceof IllegalStateException);
+			assertEquals(1, posting.handled.get());
+		} finally {
+			broken.shutdown();
+		}
+	}
+}
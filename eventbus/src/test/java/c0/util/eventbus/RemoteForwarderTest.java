@@ -0,0 +1,228 @@
+package c0.util.eventbus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import c0.util.eventbus.annotations.Subscribe;
+import c0.util.eventbus.codec.CodecRegistry;
+import c0.util.eventbus.codec.EventCodec;
+import c0.util.eventbus.events.BaseEvent;
+import c0.util.eventbus.remote.LoopbackTransport;
+import c0.util.eventbus.remote.Transport;
+
+public class RemoteForwarderTest {
+
+	public static class Note extends BaseEvent {
+		final String text;
+
+		public Note(String text) {
+			super(() -> "NOTE");
+			this.text = text;
+		}
+
+		@Override
+		public void reset() {
+		}
+	}
+
+	public static class NoteCodec implements EventCodec<Note> {
+		@Override
+		public void encode(Note event, ByteBuffer buffer) {
+			EventCodec.putString(buffer, event.text);
+		}
+
+		@Override
+		public Note decode(ByteBuffer buffer) {
+			return new Note(EventCodec.getString(buffer));
+		}
+	}
+
+	public static class Notes {
+		final List<String> received = Collections.synchronizedList(new ArrayList<>());
+		final CountDownLatch done;
+
+		Notes(int expected) {
+			done = new CountDownLatch(expected);
+		}
+
+		@Subscribe
+		public void onNote(Note note) {
+			received.add(note.text);
+			done.countDown();
+		}
+	}
+
+	/**
+	 * Keeps the frames sent to it so a test can deliver them by hand
+	 */
+	public static class RecordingTransport implements Transport {
+		final List<ByteBuffer> sent = Collections.synchronizedList(new ArrayList<>());
+		final CountDownLatch first = new CountDownLatch(1);
+		Receiver receiver;
+
+		@Override
+		public void send(String peer, ByteBuffer frame) {
+			ByteBuffer copy = ByteBuffer.allocate(frame.remaining());
+			copy.put(frame.duplicate()).flip();
+			sent.add(copy);
+			first.countDown();
+		}
+
+		@Override
+		public void bind(Receiver receiver) {
+			this.receiver = receiver;
+		}
+
+		void deliver(String peer, ByteBuffer frame) {
+			receiver.receive(peer, frame.duplicate());
+		}
+	}
+
+	// Frame header: origin node id, incarnation, record count
+	private static int recordsIn(List<ByteBuffer> frames) {
+		int records = 0;
+		synchronized (frames) {
+			for (ByteBuffer frame : frames) {
+				records += frame.getInt(4 + frame.getInt(0) + 8);
+			}
+		}
+		return records;
+	}
+
+	private final List<EventBus> buses = new ArrayList<>();
+	private final List<AutoCloseable> closeables = new ArrayList<>();
+
+	@After
+	public void teardown() throws Exception {
+		for (AutoCloseable closeable : closeables) {
+			closeable.close();
+		}
+		for (EventBus bus : buses) {
+			bus.shutdown();
+		}
+	}
+
+	private EventBus bus() {
+		EventBus bus = new EventBus();
+		buses.add(bus);
+		return bus;
+	}
+
+	private RemoteForwarder forwarder(EventBus bus, Transport transport, String node) {
+		CodecRegistry codecs = new CodecRegistry().register(1, Note.class, new NoteCodec());
+		RemoteForwarder forwarder = new RemoteForwarder(bus, codecs, transport, node, 64).forward(Note.class);
+		closeables.add(forwarder);
+		closeables.add(transport);
+		return forwarder;
+	}
+
+	@Test
+	public void everyNodeReceivesEachEventOnce() throws Exception {
+		LoopbackTransport.Network network = new LoopbackTransport.Network();
+		String[] nodes = { "a", "b", "c" };
+		EventBus[] buses = new EventBus[nodes.length];
+		Notes[] notes = new Notes[nodes.length];
+		RemoteForwarder[] forwarders = new RemoteForwarder[nodes.length];
+		for (int i = 0; i < nodes.length; i++) {
+			buses[i] = bus();
+			notes[i] = new Notes(nodes.length);
+			buses[i].register(notes[i]);
+			forwarders[i] = forwarder(buses[i], network.join(nodes[i]), nodes[i]);
+			for (String peer : nodes) {
+				if (!peer.equals(nodes[i])) {
+					forwarders[i].addPeer(peer);
+				}
+			}
+		}
+
+		for (int i = 0; i < nodes.length; i++) {
+			buses[i].post(new Note("from " + nodes[i]));
+		}
+		for (Notes node : notes) {
+			assertTrue(node.done.await(10, TimeUnit.SECONDS));
+		}
+		// Gives echoes a chance to show up
+		Thread.sleep(300);
+
+		for (int i = 0; i < nodes.length; i++) {
+			assertEquals(nodes.length, notes[i].received.size());
+			for (String node : nodes) {
+				assertTrue(notes[i].received.contains("from " + node));
+			}
+			assertEquals(0, forwarders[i].getDuplicateCount());
+		}
+	}
+
+	@Test
+	public void repeatedFramesAreDropped() throws Exception {
+		RecordingTransport senderTransport = new RecordingTransport();
+		RecordingTransport receiverTransport = new RecordingTransport();
+		EventBus senderBus = bus();
+		EventBus receiverBus = bus();
+		Notes sent = new Notes(1);
+		Notes received = new Notes(1);
+		senderBus.register(sent);
+		receiverBus.register(received);
+		RemoteForwarder sender = forwarder(senderBus, senderTransport, "sender").addPeer("receiver");
+		RemoteForwarder receiver = forwarder(receiverBus, receiverTransport, "receiver").addPeer("sender");
+
+		senderBus.post(new Note("once"));
+		assertTrue(senderTransport.first.await(10, TimeUnit.SECONDS));
+		ByteBuffer frame = senderTransport.sent.get(0);
+
+		receiverTransport.deliver("sender", frame);
+		receiverTransport.deliver("sender", frame);
+		assertEquals(List.of("once"), received.received);
+		assertEquals(1, receiver.getDuplicateCount());
+
+		// A frame that comes back to its origin is dropped as well
+		senderTransport.deliver("receiver", frame);
+		assertEquals(List.of("once"), sent.received);
+		assertEquals(1, sender.getDuplicateCount());
+
+		// The received event is not sent back out
+		Thread.sleep(300);
+		assertTrue(receiverTransport.sent.isEmpty());
+	}
+
+	@Test
+	public void sequencesOlderThanTheWindowCountAsSeen() throws Exception {
+		RecordingTransport senderTransport = new RecordingTransport();
+		RecordingTransport receiverTransport = new RecordingTransport();
+		EventBus senderBus = bus();
+		EventBus receiverBus = bus();
+		int count = 10_000;
+		Notes received = new Notes(count);
+		receiverBus.register(received);
+		forwarder(senderBus, senderTransport, "sender").addPeer("receiver");
+		RemoteForwarder receiver = forwarder(receiverBus, receiverTransport, "receiver");
+
+		for (int i = 0; i < count; i++) {
+			senderBus.post(new Note(Integer.toString(i)));
+		}
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (recordsIn(senderTransport.sent) < count && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		List<ByteBuffer> frames = new ArrayList<>(senderTransport.sent);
+		for (ByteBuffer frame : frames) {
+			receiverTransport.deliver("sender", frame);
+		}
+		assertTrue(received.done.await(10, TimeUnit.SECONDS));
+
+		// Far behind the highest sequence, so dropped without remembering each one
+		receiverTransport.deliver("sender", frames.get(0));
+		assertEquals(count, received.received.size());
+		assertTrue(receiver.getDuplicateCount() > 0);
+	}
+}
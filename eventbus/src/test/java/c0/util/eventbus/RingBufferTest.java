@@ -0,0 +1,200 @@
+package c0.util.eventbus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import c0.util.eventbus.annotations.Subscribe;
+import c0.util.eventbus.events.BaseEvent;
+
+public class RingBufferTest {
+
+	public static class Tick extends BaseEvent {
+		final int sequence;
+
+		public Tick(int sequence) {
+			super(() -> "TICK");
+			this.sequence = sequence;
+		}
+
+		@Override
+		public void reset() {
+		}
+	}
+
+	public static class Recorder {
+		final List<Integer> received = new ArrayList<>();
+		final CountDownLatch done;
+
+		Recorder(int expected) {
+			done = new CountDownLatch(expected);
+		}
+
+		@Subscribe
+		public void onTick(Tick tick) {
+			received.add(tick.sequence);
+			done.countDown();
+		}
+	}
+
+	public static class Blocker {
+		final CountDownLatch entered = new CountDownLatch(1);
+		final CountDownLatch gate = new CountDownLatch(1);
+
+		@Subscribe
+		public void onTick(Tick tick) throws InterruptedException {
+			entered.countDown();
+			gate.await();
+		}
+	}
+
+	private EventBus bus;
+
+	@Before
+	public void setup() {
+		bus = new EventBus();
+	}
+
+	@After
+	public void teardown() {
+		bus.shutdown();
+	}
+
+	@Test
+	public void singleConsumerKeepsPostingOrder() throws InterruptedException {
+		int count = 20000;
+		bus.registerRingBuffer(Tick.class, 64, 1, WaitStrategy.YIELD);
+		Recorder recorder = new Recorder(count);
+		bus.register(recorder);
+		for (int i = 0; i < count; i++) {
+			bus.post(new Tick(i));
+		}
+		assertTrue(recorder.done.await(30, TimeUnit.SECONDS));
+		for (int i = 0; i < count; i++) {
+			assertEquals(i, (int) recorder.received.get(i));
+		}
+	}
+
+	@Test
+	public void shutdownReleasesPublishersWaitingOnAFullRing() throws InterruptedException {
+		bus.registerRingBuffer(Tick.class, 2, 1, WaitStrategy.PARK);
+		Blocker blocker = new Blocker();
+		bus.register(blocker);
+		bus.post(new Tick(0));
+		assertTrue(blocker.entered.await(10, TimeUnit.SECONDS));
+
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		Thread publisher = new Thread(() -> {
+			try {
+				for (int i = 1; i < 10; i++) {
+					bus.post(new Tick(i));
+				}
+			} catch (Throwable e) {
+				failure.set(e);
+			}
+		});
+		publisher.start();
+		// Give the publisher time to fill the ring and start waiting
+		Thread.sleep(200);
+		assertTrue(publisher.isAlive());
+
+		// Shutdown waits for the blocked consumer, the publisher must not
+		Thread stopper = new Thread(bus::shutdown);
+		stopper.start();
+		publisher.join(10000);
+		boolean released = !publisher.isAlive();
+		blocker.gate.countDown();
+		stopper.join(10000);
+		if (!released) {
+			fail("Publisher still waiting after shutdown");
+		}
+		assertTrue(failure.get() instanceof IllegalStateException);
+		assertFalse(stopper.isAlive());
+	}
+
+	@Test
+	public void shutdownWaitsForPublishedEvents() {
+		int count = 5000;
+		bus.registerRingBuffer(Tick.class, 64, 2, WaitStrategy.YIELD);
+		Recorder recorder = new Recorder(count);
+		bus.register(recorder);
+		for (int i = 0; i < count; i++) {
+			bus.post(new Tick(i));
+		}
+		bus.shutdown();
+		assertEquals(0, recorder.done.getCount());
+	}
+
+	// Every post racing the shutdown is either rejected or delivered, none is left
+	// in a slot nobody consumes
+	@Test
+	public void postsRacingShutdownAllComplete() throws Exception {
+		bus.registerRingBuffer(Tick.class, 16, 1, WaitStrategy.YIELD);
+		bus.register(new Object() {
+			@Subscribe
+			public void onTick(Tick tick) {
+			}
+		});
+		int publishers = 4;
+		List<List<CompletableFuture<Void>>> futures = new ArrayList<>();
+		List<Thread> threads = new ArrayList<>();
+		CountDownLatch started = new CountDownLatch(publishers);
+		for (int p = 0; p < publishers; p++) {
+			List<CompletableFuture<Void>> posted = new ArrayList<>();
+			futures.add(posted);
+			Thread thread = new Thread(() -> {
+				started.countDown();
+				for (int i = 0; i < 20000; i++) {
+					posted.add(bus.postAsync(new Tick(i)));
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+		bus.shutdown();
+		for (Thread thread : threads) {
+			thread.join(10000);
+		}
+		for (List<CompletableFuture<Void>> posted : futures) {
+			for (CompletableFuture<Void> future : posted) {
+				try {
+					future.get(10, TimeUnit.SECONDS);
+				} catch (ExecutionException e) {
+					assertTrue(e.getCause().getCause() instanceof IllegalStateException);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void postAsyncFailsOnAStoppedRing() throws InterruptedException {
+		bus.registerRingBuffer(Tick.class, 2, 1, WaitStrategy.PARK);
+		bus.register(new Recorder(1));
+		bus.shutdown();
+		assertTrue(bus.postAsync(new Tick(0)).isCompletedExceptionally());
+	}
+
+	@Test
+	public void attemptCountSaturates() {
+		int attempt = 0;
+		for (int i = 0; i < 1000; i++) {
+			attempt = WaitStrategy.nextAttempt(attempt);
+		}
+		assertEquals(attempt, WaitStrategy.nextAttempt(attempt));
+		assertEquals(attempt, WaitStrategy.nextAttempt(Integer.MAX_VALUE));
+	}
+}
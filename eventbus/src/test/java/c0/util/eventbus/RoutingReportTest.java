@@ -0,0 +1,143 @@
+package c0.util.eventbus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import c0.util.eventbus.annotations.ListensTo;
+import c0.util.eventbus.annotations.Posts;
+import c0.util.eventbus.annotations.Subscribe;
+import c0.util.eventbus.events.BaseEvent;
+
+public class RoutingReportTest {
+
+	public static class Login extends BaseEvent {
+		public Login() {
+			super(() -> "LOGIN");
+		}
+
+		@Override
+		public void reset() {
+		}
+	}
+
+	public static class AdminLogin extends Login {
+		@Override
+		public void reset() {
+		}
+	}
+
+	public static class Logout extends BaseEvent {
+		public Logout() {
+			super(() -> "LOGOUT");
+		}
+
+		@Override
+		public void reset() {
+		}
+	}
+
+	public static class Heartbeat extends BaseEvent {
+		public Heartbeat() {
+			super(() -> "HEARTBEAT");
+		}
+
+		@Override
+		public void reset() {
+		}
+	}
+
+	@Posts({ AdminLogin.class, Logout.class })
+	public static class SessionService {
+	}
+
+	@ListensTo(Login.class)
+	public static class Auditor {
+		@Subscribe
+		public void onLogin(Login login) {
+		}
+	}
+
+	@ListensTo(Heartbeat.class)
+	public static class Monitor {
+		@Subscribe
+		public void onHeartbeat(Heartbeat heartbeat) {
+		}
+	}
+
+	@Posts(String.class)
+	public static class NotAPublisher {
+	}
+
+	private EventBus bus;
+
+	@Before
+	public void setup() {
+		bus = new EventBus();
+	}
+
+	@After
+	public void teardown() {
+		bus.shutdown();
+	}
+
+	@Test
+	public void mapsPostedTypesToTheirListeners() {
+		bus.registerPublisher(SessionService.class);
+		bus.register(new Auditor());
+		bus.register(new Monitor());
+
+		RoutingReport report = bus.getRoutingReport();
+		assertEquals(Map.of(AdminLogin.class, Set.of(Auditor.class), Logout.class, Set.of()), report.getRoutes());
+		assertEquals(Set.of(Logout.class), report.getUnroutedTypes());
+		// Nothing posts heartbeats, logins are covered by the posted subtype
+		assertEquals(Set.of(Heartbeat.class), report.getUnusedTypes());
+	}
+
+	@Test
+	public void followsRegistrationChanges() {
+		bus.registerPublisher(SessionService.class);
+		Auditor auditor = new Auditor();
+		bus.register(auditor);
+		bus.unregister(auditor);
+
+		RoutingReport report = bus.getRoutingReport();
+		assertEquals(Set.of(AdminLogin.class, Logout.class), report.getUnroutedTypes());
+		// The declaration stays after the listener is gone
+		assertEquals(Set.of(), report.getUnusedTypes());
+	}
+
+	// Declared routes are built with the snapshot, and still deliver like any other
+	@Test
+	public void declaredRoutesDeliver() {
+		bus.registerPublisher(SessionService.class);
+		List<String> received = new ArrayList<>();
+		bus.register(new Object() {
+			@Subscribe
+			public void onLogout(Logout logout) {
+				received.add("logout");
+			}
+		});
+		bus.post(new Logout());
+		assertEquals(List.of("logout"), received);
+	}
+
+	@Test
+	public void rejectsDeclaredTypesThatAreNotEvents() {
+		try {
+			EventBus.declaredEventTypes(NotAPublisher.class);
+			fail("Expected declaring a non event type to fail");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("java.lang.String"));
+		}
+	}
+}
@@ -0,0 +1,175 @@
+package c0.util.eventbus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import c0.util.eventbus.annotations.Subscribe;
+import c0.util.eventbus.events.BaseEvent;
+import c0.util.eventbus.events.Event;
+
+public class RoutingTest {
+
+	public interface Tagged {
+	}
+
+	public static class Price extends BaseEvent {
+		public Price() {
+			super(() -> "PRICE");
+		}
+
+		public Price(String type) {
+			super(() -> type);
+		}
+
+		@Override
+		public void reset() {
+		}
+	}
+
+	public static class Quote extends Price implements Tagged {
+		@Override
+		public void reset() {
+		}
+	}
+
+	public static class Trade extends BaseEvent {
+		public Trade() {
+			super(() -> "TRADE");
+		}
+
+		@Override
+		public void reset() {
+		}
+	}
+
+	public static class Listener {
+		final List<String> received = new ArrayList<>();
+
+		@Subscribe
+		public void onPrice(Price price) {
+			received.add("price:" + price.getClass().getSimpleName());
+		}
+
+		@Subscribe
+		public void onTagged(Tagged tagged) {
+			received.add("tagged:" + tagged.getClass().getSimpleName());
+		}
+
+		@Subscribe
+		public void onTrade(Trade trade) {
+			received.add("trade");
+		}
+
+		@Subscribe
+		public void onAny(Event event) {
+			received.add("any:" + event.getClass().getSimpleName());
+		}
+	}
+
+	public static class Prioritized {
+		final List<String> received = new ArrayList<>();
+
+		@Subscribe(priority = 0)
+		public void last(Price price) {
+			received.add("last");
+		}
+
+		@Subscribe(priority = 2)
+		public void first(Price price) {
+			received.add("first");
+		}
+
+		@Subscribe(priority = 1)
+		public void second(Price price) {
+			received.add("second");
+		}
+	}
+
+	public static class Filtered {
+		final List<String> received = new ArrayList<>();
+
+		@Subscribe(types = { "BID", "ASK" })
+		public void onQuote(Price price) {
+			received.add(price.getType().getName());
+		}
+	}
+
+	private EventBus bus;
+
+	@Before
+	public void setup() {
+		bus = new EventBus();
+	}
+
+	@After
+	public void teardown() {
+		bus.shutdown();
+	}
+
+	@Test
+	public void deliversToSubscribersOfTheClassAndItsSupertypes() {
+		Listener listener = new Listener();
+		bus.register(listener);
+
+		bus.post(new Quote());
+		assertTrue(listener.received.contains("price:Quote"));
+		assertTrue(listener.received.contains("tagged:Quote"));
+		assertTrue(listener.received.contains("any:Quote"));
+		assertEquals(3, listener.received.size());
+
+		listener.received.clear();
+		bus.post(new Trade());
+		assertTrue(listener.received.contains("trade"));
+		assertTrue(listener.received.contains("any:Trade"));
+		assertEquals(2, listener.received.size());
+	}
+
+	// Subscribers with a higher priority value are called first
+	@Test
+	public void deliversInPriorityOrder() {
+		Prioritized listener = new Prioritized();
+		bus.register(listener);
+		bus.post(new Price());
+		assertEquals(List.of("first", "second", "last"), listener.received);
+	}
+
+	@Test
+	public void filtersByEventType() {
+		Filtered listener = new Filtered();
+		bus.register(listener);
+		bus.post(new Price("BID"));
+		bus.post(new Price("TRADE"));
+		bus.post(new Price("ASK"));
+		bus.post(new Price(null));
+		assertEquals(List.of("BID", "ASK"), listener.received);
+	}
+
+	@Test
+	public void stopsDeliveringAfterUnregister() {
+		Listener listener = new Listener();
+		Prioritized other = new Prioritized();
+		bus.register(listener);
+		bus.register(other);
+		bus.post(new Price());
+		bus.unregister(listener);
+		bus.post(new Price());
+		assertEquals(2, listener.received.size());
+		assertEquals(6, other.received.size());
+	}
+
+	@Test
+	public void rebuildsRoutesWhenSubscribersChange() {
+		bus.post(new Quote());
+		Listener listener = new Listener();
+		bus.register(listener);
+		bus.post(new Quote());
+		assertEquals(3, listener.received.size());
+	}
+}
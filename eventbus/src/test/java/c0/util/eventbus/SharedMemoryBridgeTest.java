@@ -0,0 +1,212 @@
+package c0.util.eventbus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import c0.util.eventbus.annotations.Subscribe;
+import c0.util.eventbus.codec.CodecRegistry;
+import c0.util.eventbus.codec.EventCodec;
+import c0.util.eventbus.events.BaseEvent;
+
+public class SharedMemoryBridgeTest {
+
+	private static final int CAPACITY = 256;
+
+	public static class Message extends BaseEvent {
+		final String text;
+
+		public Message(String text) {
+			super(() -> "MESSAGE");
+			this.text = text;
+		}
+
+		@Override
+		public void reset() {
+		}
+	}
+
+	public static class Shout extends Message {
+		public Shout(String text) {
+			super(text.toUpperCase());
+		}
+	}
+
+	public static class MessageCodec implements EventCodec<Message> {
+		@Override
+		public void encode(Message event, ByteBuffer buffer) {
+			EventCodec.putString(buffer, event.text);
+		}
+
+		@Override
+		public Message decode(ByteBuffer buffer) {
+			return new Message(EventCodec.getString(buffer));
+		}
+	}
+
+	public static class Inbox {
+		final List<Message> received = Collections.synchronizedList(new ArrayList<>());
+		final CountDownLatch done;
+
+		Inbox(int expected) {
+			done = new CountDownLatch(expected);
+		}
+
+		@Subscribe
+		public void onMessage(Message message) {
+			received.add(message);
+			done.countDown();
+		}
+	}
+
+	public static class GatedInbox extends Inbox {
+		final CountDownLatch gate = new CountDownLatch(1);
+
+		GatedInbox(int expected) {
+			super(expected);
+		}
+
+		@Override
+		@Subscribe
+		public void onMessage(Message message) {
+			try {
+				gate.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			super.onMessage(message);
+		}
+	}
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final EventBus sender = new EventBus();
+	private final EventBus receiver = new EventBus();
+	private final List<SharedMemoryBridge> bridges = new ArrayList<>();
+
+	@After
+	public void teardown() {
+		for (SharedMemoryBridge bridge : bridges) {
+			bridge.close();
+		}
+		sender.shutdown();
+		receiver.shutdown();
+	}
+
+	private SharedMemoryBridge bridge(EventBus bus, Path outbound, Path inbound) throws IOException {
+		CodecRegistry codecs = new CodecRegistry().register(1, Message.class, new MessageCodec());
+		SharedMemoryBridge bridge = new SharedMemoryBridge(bus, codecs, outbound, inbound, CAPACITY, WaitStrategy.YIELD);
+		bridges.add(bridge);
+		return bridge;
+	}
+
+	private static String text(int i) {
+		// Lengths vary so records end at every offset and padding is needed when wrapping
+		StringBuilder text = new StringBuilder().append(i).append(':');
+		for (int j = 0; j < i % 61; j++) {
+			text.append((char) ('a' + j % 26));
+		}
+		return text.toString();
+	}
+
+	@Test
+	public void recordsWrapAroundTheRingInOrder() throws Exception {
+		Path file = folder.newFile("ring").toPath();
+		int count = 5000;
+		Inbox inbox = new Inbox(count);
+		receiver.register(inbox);
+		bridge(receiver, null, file);
+		bridge(sender, file, null).forward(Message.class);
+
+		for (int i = 0; i < count; i++) {
+			sender.post(new Message(text(i)));
+		}
+		assertTrue(inbox.done.await(20, TimeUnit.SECONDS));
+		for (int i = 0; i < count; i++) {
+			assertEquals(text(i), inbox.received.get(i).text);
+		}
+	}
+
+	@Test
+	public void fullRingMakesTheWriterWait() throws Exception {
+		Path file = folder.newFile("ring").toPath();
+		int count = 200;
+		GatedInbox inbox = new GatedInbox(count);
+		receiver.register(inbox);
+		bridge(receiver, null, file);
+		bridge(sender, file, null).forward(Message.class);
+
+		Thread writer = new Thread(() -> {
+			for (int i = 0; i < count; i++) {
+				sender.post(new Message(text(i)));
+			}
+		});
+		writer.start();
+		writer.join(500);
+		// The reader is stuck on the first event, so the ring fills up
+		assertTrue(writer.isAlive());
+
+		inbox.gate.countDown();
+		writer.join(20000);
+		assertTrue(inbox.done.await(20, TimeUnit.SECONDS));
+		assertEquals(count, inbox.received.size());
+		assertEquals(text(count - 1), inbox.received.get(count - 1).text);
+	}
+
+	@Test
+	public void forwardedEventsDoNotComeBack() throws Exception {
+		Path there = folder.newFile("there").toPath();
+		Path back = folder.newFile("back").toPath();
+		// The receiver forwards from ring buffer consumer threads, after the reader
+		// has moved on
+		receiver.registerRingBuffer(Message.class, 64, 1, WaitStrategy.YIELD);
+		Inbox sent = new Inbox(1);
+		Inbox received = new Inbox(1);
+		sender.register(sent);
+		receiver.register(received);
+		bridge(sender, there, back).forward(Message.class);
+		bridge(receiver, back, there).forward(Message.class);
+
+		sender.post(new Message("ping"));
+		assertTrue(received.done.await(10, TimeUnit.SECONDS));
+		receiver.post(new Message("pong"));
+		assertTrue(sent.done.await(10, TimeUnit.SECONDS));
+		Thread.sleep(300);
+
+		assertEquals(2, sent.received.size());
+		assertEquals("ping", sent.received.get(0).text);
+		assertEquals("pong", sent.received.get(1).text);
+		assertEquals(2, received.received.size());
+		// Only events read from the other process carry an origin
+		assertEquals(0, sent.received.get(0).getOrigin());
+		assertTrue(sent.received.get(1).getOrigin() != 0);
+	}
+
+	@Test
+	public void subtypesUseTheCodecOfTheirSupertype() throws Exception {
+		Path file = folder.newFile("ring").toPath();
+		Inbox inbox = new Inbox(1);
+		receiver.register(inbox);
+		bridge(receiver, null, file);
+		bridge(sender, file, null).forward(Message.class);
+
+		sender.post(new Shout("hello"));
+		assertTrue(inbox.done.await(10, TimeUnit.SECONDS));
+		assertEquals(Message.class, inbox.received.get(0).getClass());
+		assertEquals("HELLO", inbox.received.get(0).text);
+	}
+}
@@ -0,0 +1,125 @@
+package c0.util.eventbus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import c0.util.eventbus.annotations.Subscribe.ThreadMode;
+import c0.util.eventbus.processor.SubscriberIndexProcessor;
+
+public class SubscriberIndexProcessorTest {
+
+	private static final String EVENT = "package sample;\n"
+			+ "public class Ping extends c0.util.eventbus.events.BaseEvent {\n"
+			+ "\tpublic Ping() { super(() -> \"PING\"); }\n"
+			+ "\t@Override public void reset() {}\n"
+			+ "}\n";
+
+	private Path directory;
+	private DiagnosticCollector<JavaFileObject> diagnostics;
+
+	@Before
+	public void setup() throws IOException {
+		directory = Files.createTempDirectory("subscriber-index");
+		diagnostics = new DiagnosticCollector<>();
+	}
+
+	@After
+	public void teardown() throws IOException {
+		try (Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+		}
+	}
+
+	private boolean compile(String listener) throws IOException {
+		Path source = directory.resolve("src/sample");
+		Files.createDirectories(source);
+		Files.writeString(source.resolve("Ping.java"), EVENT);
+		Files.writeString(source.resolve("Listener.java"), listener);
+		Path classes = Files.createDirectories(directory.resolve("classes"));
+
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		try (StandardJavaFileManager files = compiler.getStandardFileManager(diagnostics, null, null)) {
+			JavaCompiler.CompilationTask task = compiler.getTask(null, files, diagnostics,
+					List.of("-Xlint:all", "-d", classes.toString(), "-classpath", System.getProperty("java.class.path")),
+					null, files.getJavaFileObjects(source.resolve("Ping.java"), source.resolve("Listener.java")));
+			task.setProcessors(List.of(new SubscriberIndexProcessor()));
+			return task.call();
+		}
+	}
+
+	@Test
+	public void generatedIndexIsUsedWithoutProcessorWarnings() throws Exception {
+		assertTrue(compile("package sample;\n"
+				+ "import c0.util.eventbus.annotations.Subscribe;\n"
+				+ "import c0.util.eventbus.annotations.Subscribe.ThreadMode;\n"
+				+ "public class Listener {\n"
+				+ "\t@Subscribe public void onPing(Ping ping) {}\n"
+				+ "\t@Subscribe(queueCapacity = 0) public void onPosting(Ping ping) {}\n"
+				+ "\t@Subscribe(threadMode = ThreadMode.SERIAL, priority = 3, types = { \"PING\" }) public void onSerial(Ping ping) {}\n"
+				+ "\t@Subscribe public void onBatch(java.util.List<Ping> pings) {}\n"
+				+ "}\n"));
+		for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+			assertFalse(diagnostic.toString(), diagnostic.getKind() == Diagnostic.Kind.WARNING
+					|| diagnostic.getKind() == Diagnostic.Kind.MANDATORY_WARNING);
+		}
+		assertTrue(Files.exists(directory.resolve("classes/sample/Listener$$SubscriberIndex.class")));
+
+		try (URLClassLoader loader = new URLClassLoader(new URL[] { directory.resolve("classes").toUri().toURL() },
+				getClass().getClassLoader())) {
+			Class<?> listenerClass = loader.loadClass("sample.Listener");
+			SubscriberMethod[] methods = SubscriberMethodFinder.find(listenerClass);
+			assertEquals(4, methods.length);
+			for (SubscriberMethod method : methods) {
+				// Invokers of the generated index are lambdas in the index class
+				assertTrue(method.getInvoker().getClass().getName().startsWith("sample.Listener$$SubscriberIndex"));
+				if (method.getName().equals("onSerial")) {
+					assertEquals(ThreadMode.SERIAL, method.getThreadMode());
+					assertEquals(3, method.getPriority());
+					assertTrue(method.getTypes().contains("PING"));
+				}
+				assertEquals(method.getName().equals("onBatch"), method.isBatch());
+			}
+		}
+	}
+
+	@Test
+	public void rejectsZeroCapacityForAsynchronousSubscribers() throws IOException {
+		assertFalse(compile("package sample;\n"
+				+ "import c0.util.eventbus.annotations.Subscribe;\n"
+				+ "import c0.util.eventbus.annotations.Subscribe.ThreadMode;\n"
+				+ "public class Listener {\n"
+				+ "\t@Subscribe(threadMode = ThreadMode.ASYNC, queueCapacity = 0) public void onPing(Ping ping) {}\n"
+				+ "}\n"));
+	}
+
+	@Test
+	public void rejectsConflatingSubscribersOfUnkeyedEvents() throws IOException {
+		assertFalse(compile("package sample;\n"
+				+ "import c0.util.eventbus.annotations.Subscribe;\n"
+				+ "import c0.util.eventbus.annotations.Subscribe.ThreadMode;\n"
+				+ "public class Listener {\n"
+				+ "\t@Subscribe(threadMode = ThreadMode.SERIAL, conflate = true) public void onPing(Ping ping) {}\n"
+				+ "}\n"));
+	}
+}
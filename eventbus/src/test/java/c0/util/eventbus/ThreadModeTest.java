@@ -0,0 +1,140 @@
+package c0.util.eventbus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import c0.util.eventbus.annotations.Subscribe;
+import c0.util.eventbus.annotations.Subscribe.ThreadMode;
+import c0.util.eventbus.events.BaseEvent;
+
+public class ThreadModeTest {
+
+	public static class Task extends BaseEvent {
+		final int number;
+
+		public Task(int number) {
+			super(() -> "TASK");
+			this.number = number;
+		}
+
+		@Override
+		public void reset() {
+		}
+	}
+
+	public static class VirtualListener {
+		final List<Thread> threads = new CopyOnWriteArrayList<>();
+		final CountDownLatch done;
+
+		VirtualListener(int expected) {
+			done = new CountDownLatch(expected);
+		}
+
+		@Subscribe(threadMode = ThreadMode.VIRTUAL)
+		public void onTask(Task task) {
+			threads.add(Thread.currentThread());
+			done.countDown();
+		}
+	}
+
+	// Every delivery waits for all the others, which only works if each one has its
+	// own thread
+	public static class Blocking {
+		static final int DELIVERIES = 8;
+		final CyclicBarrier barrier = new CyclicBarrier(DELIVERIES);
+		final CountDownLatch done = new CountDownLatch(DELIVERIES);
+
+		@Subscribe(threadMode = ThreadMode.VIRTUAL)
+		public void onTask(Task task) throws Exception {
+			barrier.await(10, TimeUnit.SECONDS);
+			done.countDown();
+		}
+	}
+
+	public static class SerialListener {
+		final List<Integer> received = new CopyOnWriteArrayList<>();
+		final AtomicInteger running = new AtomicInteger();
+		volatile boolean overlapped;
+
+		@Subscribe(threadMode = ThreadMode.SERIAL)
+		public void onTask(Task task) {
+			if (running.incrementAndGet() > 1) {
+				overlapped = true;
+			}
+			received.add(task.number);
+			running.decrementAndGet();
+		}
+	}
+
+	private EventBus bus;
+
+	@Before
+	public void setup() {
+		bus = new EventBus();
+	}
+
+	@After
+	public void teardown() {
+		bus.shutdown();
+	}
+
+	@Test
+	public void virtualDeliveriesRunOnVirtualThreads() throws InterruptedException {
+		VirtualListener listener = new VirtualListener(3);
+		bus.register(listener);
+		for (int i = 0; i < 3; i++) {
+			bus.post(new Task(i));
+		}
+		assertTrue(listener.done.await(10, TimeUnit.SECONDS));
+		for (Thread thread : listener.threads) {
+			assertNotSame(Thread.currentThread(), thread);
+			assertTrue(thread.isVirtual());
+		}
+	}
+
+	@Test
+	public void virtualDeliveriesRunConcurrently() throws InterruptedException {
+		Blocking listener = new Blocking();
+		bus.register(listener);
+		for (int i = 0; i < Blocking.DELIVERIES; i++) {
+			bus.post(new Task(i));
+		}
+		assertTrue(listener.done.await(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void virtualDeliveriesCompletePostAsync() throws Exception {
+		VirtualListener listener = new VirtualListener(1);
+		bus.register(listener);
+		bus.postAsync(new Task(0)).get(10, TimeUnit.SECONDS);
+		assertEquals(1, listener.threads.size());
+	}
+
+	@Test
+	public void serialDeliveriesKeepPostOrder() throws Exception {
+		SerialListener listener = new SerialListener();
+		bus.register(listener);
+		for (int i = 0; i < 100; i++) {
+			bus.post(new Task(i));
+		}
+		bus.postAsync(new Task(100)).get(10, TimeUnit.SECONDS);
+		assertEquals(101, listener.received.size());
+		for (int i = 0; i <= 100; i++) {
+			assertEquals(i, (int) listener.received.get(i));
+		}
+		assertFalse(listener.overlapped);
+	}
+}
@@ -0,0 +1,114 @@
+package c0.util.eventbus;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import c0.util.eventbus.annotations.Subscribe;
+import c0.util.eventbus.events.BaseEvent;
+import c0.util.eventbus.events.Event;
+
+public class TypeFilterTest {
+
+	public static class Order extends BaseEvent {
+		public Order(String type) {
+			super(type == null ? null : () -> type);
+		}
+
+		@Override
+		public void reset() {
+		}
+	}
+
+	public static class Listener {
+		final List<String> received = new ArrayList<>();
+
+		@Subscribe(priority = 3, types = "BUY")
+		public void onBuy(Order order) {
+			received.add("buy");
+		}
+
+		@Subscribe(priority = 2)
+		public void onOrder(Order order) {
+			received.add("order");
+		}
+
+		@Subscribe(priority = 1, types = { "BUY", "SELL" })
+		public void onTrade(Event event) {
+			received.add("trade");
+		}
+	}
+
+	public static class BatchListener {
+		final List<List<String>> batches = new ArrayList<>();
+
+		@Subscribe(types = "SELL")
+		public void onSells(List<Order> orders) {
+			List<String> types = new ArrayList<>();
+			for (Order order : orders) {
+				types.add(order.getType().getName());
+			}
+			batches.add(types);
+		}
+	}
+
+	private EventBus bus;
+	private Listener listener;
+
+	@Before
+	public void setup() {
+		bus = new EventBus();
+		listener = new Listener();
+		bus.register(listener);
+	}
+
+	@After
+	public void teardown() {
+		bus.shutdown();
+	}
+
+	// Filtered and unfiltered subscribers, also of supertypes, keep one priority
+	// order
+	@Test
+	public void keepsPriorityOrderAcrossFilters() {
+		bus.post(new Order("BUY"));
+		assertEquals(List.of("buy", "order", "trade"), listener.received);
+	}
+
+	@Test
+	public void otherTypesOnlyReachMatchingSubscribers() {
+		bus.post(new Order("SELL"));
+		bus.post(new Order("HOLD"));
+		assertEquals(List.of("order", "trade", "order"), listener.received);
+	}
+
+	@Test
+	public void eventsWithoutTypeOnlyReachUnfilteredSubscribers() {
+		bus.post(new Order(null));
+		assertEquals(List.of("order"), listener.received);
+	}
+
+	// Types seen for the first time after other posts get their own table
+	@Test
+	public void eachTypeIsResolvedIndependently() {
+		for (int i = 0; i < 3; i++) {
+			bus.post(new Order("HOLD"));
+			bus.post(new Order("BUY"));
+		}
+		assertEquals(List.of("order", "buy", "order", "trade", "order", "buy", "order", "trade", "order", "buy",
+				"order", "trade"), listener.received);
+	}
+
+	@Test
+	public void batchSubscribersOnlyReceiveMatchingEvents() {
+		BatchListener batches = new BatchListener();
+		bus.register(batches);
+		bus.postAll(List.of(new Order("SELL"), new Order("BUY"), new Order("SELL")));
+		assertEquals(List.of(List.of("SELL", "SELL")), batches.batches);
+	}
+}
@@ -0,0 +1,91 @@
+package c0.util.eventbus.events;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+import org.junit.Test;
+
+import c0.util.pool.ObjectPool;
+
+public class BaseEventTest {
+
+	private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss dd-MM-yyyy");
+
+	public static class Stamped extends BaseEvent {
+		public Stamped() {
+			super(() -> "STAMPED");
+		}
+
+		Stamped at(long millis) {
+			timestampMillis = millis;
+			return this;
+		}
+
+		@Override
+		public void reset() {
+		}
+	}
+
+	private static String format(long millis) {
+		return FORMATTER.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault()));
+	}
+
+	@Test
+	public void formatsTheCapturedTime() {
+		long millis = 1_700_000_000_123L;
+		assertEquals(format(millis), new Stamped().at(millis).getTimestamp());
+	}
+
+	@Test
+	public void eventsOfTheSameSecondShareOneString() {
+		long second = 1_700_000_100_000L;
+		String first = new Stamped().at(second + 1).getTimestamp();
+		String last = new Stamped().at(second + 999).getTimestamp();
+		assertSame(first, last);
+	}
+
+	// The cache only holds the last second, older events are formatted again
+	@Test
+	public void alternatingSecondsAreNotMixedUp() {
+		long early = 1_700_000_200_500L;
+		long late = early + 61_000;
+		Stamped a = new Stamped().at(early);
+		Stamped b = new Stamped().at(late);
+		for (int i = 0; i < 3; i++) {
+			assertEquals(format(early), a.getTimestamp());
+			assertEquals(format(late), b.getTimestamp());
+		}
+	}
+
+	@Test
+	public void negativeMillisRoundDownToTheirSecond() {
+		assertEquals(format(-1), new Stamped().at(-1).getTimestamp());
+		assertEquals(format(-1000), new Stamped().at(-1000).getTimestamp());
+	}
+
+	@Test
+	public void reusedEventsCaptureANewTimestampAndForgetTheirOrigin() {
+		Stamped event = ObjectPool.get(Stamped.class);
+		event.at(0);
+		event.setOrigin(42);
+		long nanos = event.getTimestampNanos();
+		event.release();
+
+		long before = System.currentTimeMillis();
+		Stamped reused = ObjectPool.get(Stamped.class);
+		long after = System.currentTimeMillis();
+		assertSame(event, reused);
+		assertTrue(reused.getTimestampMillis() >= before && reused.getTimestampMillis() <= after);
+		assertTrue(reused.getTimestampNanos() >= nanos);
+		assertEquals(format(reused.getTimestampMillis()), reused.getTimestamp());
+		// Reused events were not received from another process
+		assertEquals(0, reused.getOrigin());
+		reused.release();
+	}
+}
@@ -0,0 +1,82 @@
+package c0.util.pool;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Base for pooled objects that are shared between holders, counting references
+ * per instance. The count is updated atomically, so an object can be retained
+ * and released from several threads at once.
+ * <p>
+ * An object taken from the pool, or newly created, starts with one reference
+ * held by whoever acquired it. Every {@link #retain()} adds one and every
+ * {@link #release()} removes one, and the release that removes the last one
+ * returns the object to the pool. Retaining or releasing it after that fails,
+ * so a second release by the same holder is reported instead of pooling the
+ * object twice.
+ */
+public abstract class AbstractPooledObject<T extends PooledObject<T>> implements PooledObject<T> {
+
+	private static final AtomicIntegerFieldUpdater<AbstractPooledObject<?>> REFERENCES = newUpdater();
+
+	// Reference count while the object is in the pool
+	private static final int IN_POOL = -1;
+
+	private volatile int references = 1;
+	// Set while a sampled acquisition is tracked for leaks
+	private LeakDetector.Tracker leakTracker;
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static AtomicIntegerFieldUpdater<AbstractPooledObject<?>> newUpdater() {
+		return (AtomicIntegerFieldUpdater) AtomicIntegerFieldUpdater.newUpdater(AbstractPooledObject.class, "references");
+	}
+
+	/**
+	 * Called by the pool when the object is handed out
+	 */
+	void acquired() {
+		// Published to releasing threads by the write of the count
+		leakTracker = LeakDetector.track(this);
+		REFERENCES.set(this, 1);
+	}
+
+	public int referenceCount() {
+		return Math.max(references, 0);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T retain() {
+		while (true) {
+			int current = references;
+			if (current == IN_POOL) {
+				throw new IllegalStateException(getClass().getName() + " was retained after it was returned to the pool");
+			}
+			if (REFERENCES.compareAndSet(this, current, current + 1)) {
+				return (T) this;
+			}
+		}
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T release() {
+		while (true) {
+			int current = references;
+			if (current == IN_POOL) {
+				throw new IllegalStateException(getClass().getName() + " was released after it was returned to the pool");
+			}
+			if (current > 1) {
+				if (REFERENCES.compareAndSet(this, current, current - 1)) {
+					return (T) this;
+				}
+			} else if (REFERENCES.compareAndSet(this, 1, IN_POOL)) {
+				if (leakTracker != null) {
+					leakTracker.close();
+					leakTracker = null;
+				}
+				returnToPool();
+				return (T) this;
+			}
+		}
+	}
+}
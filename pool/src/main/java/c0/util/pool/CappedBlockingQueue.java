@@ -4,10 +4,14 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * A custom extention of a {@link ConcurrentLinkedQueue} for an object pool, which has a mainautomatically nullifies objects which are offered to the queue 
+ * 
+ * @deprecated The pool uses {@link MpmcArrayQueue}, whose capacity check does
+ *             not walk the queue and which allocates no nodes
  */
+@Deprecated
 public class CappedBlockingQueue extends ConcurrentLinkedQueue<PooledObject<?>>{
 
-	private int maxSize;
+	private volatile int maxSize;
 
 	public CappedBlockingQueue(int maxSize) {
         this.maxSize = maxSize;
@@ -0,0 +1,84 @@
+package c0.util.pool;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Finds pooled objects that are garbage collected without being released.
+ * Only one in every {@link #setSamplingInterval(int) interval} acquisitions is
+ * tracked, remembering where the object was acquired. A tracked object that is
+ * collected while still in use is reported with that stack trace the next time
+ * an acquisition is sampled.
+ */
+final class LeakDetector {
+
+	static final int DEFAULT_SAMPLING_INTERVAL = 128;
+
+	private static volatile int samplingInterval = DEFAULT_SAMPLING_INTERVAL;
+
+	private static final ReferenceQueue<Object> collected = new ReferenceQueue<>();
+	// Keeps the trackers reachable until their object is released or collected
+	private static final Set<Tracker> live = ConcurrentHashMap.newKeySet();
+
+	private LeakDetector() {
+	}
+
+	/**
+	 * @param interval track one in this many acquisitions, 1 to track all and 0 to
+	 *                 disable
+	 */
+	static void setSamplingInterval(int interval) {
+		if (interval < 0) {
+			throw new IllegalArgumentException("Sampling interval must not be negative, was " + interval);
+		}
+		samplingInterval = interval;
+	}
+
+	/**
+	 * Starts tracking the object if this acquisition is sampled
+	 * 
+	 * @return the tracker to close on release, or null if not sampled
+	 */
+	static Tracker track(Object pooled) {
+		int interval = samplingInterval;
+		if (interval == 0 || (interval > 1 && ThreadLocalRandom.current().nextInt(interval) != 0)) {
+			return null;
+		}
+		reportLeaks();
+		Tracker tracker = new Tracker(pooled);
+		live.add(tracker);
+		return tracker;
+	}
+
+	private static void reportLeaks() {
+		Reference<?> reference;
+		while ((reference = collected.poll()) != null) {
+			Tracker tracker = (Tracker) reference;
+			if (live.remove(tracker)) {
+				new IllegalStateException("LEAK: " + tracker.className
+						+ " was garbage collected without being released. It was acquired at", tracker.acquiredAt)
+						.printStackTrace();
+			}
+		}
+	}
+
+	static final class Tracker extends PhantomReference<Object> {
+		private final String className;
+		private final Throwable acquiredAt;
+
+		private Tracker(Object pooled) {
+			super(pooled, collected);
+			this.className = pooled.getClass().getName();
+			this.acquiredAt = new Throwable("Acquired on thread " + Thread.currentThread().getName());
+		}
+
+		void close() {
+			live.remove(this);
+			clear();
+		}
+	}
+}
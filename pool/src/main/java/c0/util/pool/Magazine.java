@@ -0,0 +1,104 @@
+package c0.util.pool;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Per-thread cache of pooled objects of one class. Taking and returning
+ * objects only touches the thread's own array, no atomics or locks. An empty
+ * magazine refills half of itself from the class's shared pool, the depot, and a
+ * full one moves half of its objects back to the depot, so objects returned on
+ * one thread reach threads that take them on another.
+ * <p>
+ * Threads that only return objects of the class, for example consumers at the
+ * end of a pipeline, pass them straight to the depot, so they are not kept
+ * where nobody takes them.
+ * <p>
+ * How many objects a magazine holds follows the class's pool size. It is read
+ * again on every refill and spill, so the magazine grows and shrinks with the
+ * pool instead of keeping the size it started with.
+ */
+final class Magazine {
+
+	static final int MAX_SIZE = 32;
+
+	private final PooledObject<?>[] objects = new PooledObject<?>[MAX_SIZE];
+	private int count;
+	private final IntSupplier size;
+	// Number of objects held before spilling, up to MAX_SIZE
+	private int limit;
+	// Whether the owning thread has taken objects of the class
+	private boolean acquiring;
+	private final MpmcArrayQueue<PooledObject<?>> depot;
+	// Objects the depot had no room for, read by the pool's daemon
+	private final LongAdder dropped;
+
+	/**
+	 * @param size how many objects the magazine should hold, read on every refill
+	 *             and spill
+	 */
+	Magazine(MpmcArrayQueue<PooledObject<?>> depot, IntSupplier size, LongAdder dropped) {
+		this.depot = depot;
+		this.size = size;
+		this.dropped = dropped;
+		this.limit = limit();
+	}
+
+	/**
+	 * Takes an object, or returns null if neither the magazine nor the depot has
+	 * one
+	 */
+	PooledObject<?> pop() {
+		acquiring = true;
+		if (count == 0) {
+			refill();
+			if (count == 0) {
+				return null;
+			}
+		}
+		PooledObject<?> object = objects[--count];
+		objects[count] = null;
+		return object;
+	}
+
+	void push(PooledObject<?> object) {
+		if (!acquiring) {
+			toDepot(object);
+			return;
+		}
+		if (count >= limit) {
+			spill();
+		}
+		objects[count++] = object;
+	}
+
+	private void refill() {
+		limit = limit();
+		int target = Math.max(1, limit / 2);
+		PooledObject<?> object;
+		while (count < target && (object = depot.poll()) != null) {
+			objects[count++] = object;
+		}
+	}
+
+	private void spill() {
+		limit = limit();
+		int keep = limit / 2;
+		while (count > keep) {
+			PooledObject<?> object = objects[--count];
+			objects[count] = null;
+			toDepot(object);
+		}
+	}
+
+	// Objects the depot has no room for are left to the garbage collector
+	private void toDepot(PooledObject<?> object) {
+		if (!depot.offer(object)) {
+			dropped.increment();
+		}
+	}
+
+	private int limit() {
+		return Math.max(1, Math.min(MAX_SIZE, size.getAsInt()));
+	}
+}
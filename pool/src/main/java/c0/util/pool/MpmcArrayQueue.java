@@ -0,0 +1,218 @@
+package c0.util.pool;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded lock-free queue for any number of producer and consumer threads,
+ * backed by a preallocated ring of slots. Each slot carries a sequence number
+ * that tells producers and consumers whose turn it is, so offering and polling
+ * only claim a position with a compare-and-set and allocate nothing. The head
+ * and tail positions sit on cache lines of their own, so producers and consumers
+ * do not slow each other down through false sharing.
+ * <p>
+ * The capacity can be changed while the queue is in use. Changes within the
+ * ring's length only move the limit, larger ones move the elements to a new
+ * ring. Elements offered while that happens may be dropped, which is harmless
+ * for a pool of reusable objects.
+ */
+public class MpmcArrayQueue<E> {
+
+	private static final VarHandle SEQUENCE = MethodHandles.arrayElementVarHandle(long[].class);
+	private static final VarHandle HEAD;
+	private static final VarHandle TAIL;
+
+	static {
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			HEAD = lookup.findVarHandle(Head.class, "head", long.class);
+			TAIL = lookup.findVarHandle(Tail.class, "tail", long.class);
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private volatile Ring ring;
+	private volatile int capacity;
+	// Only resizing threads take it, offer and poll never do
+	private final Lock resizeLock = new ReentrantLock();
+
+	public MpmcArrayQueue(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be at least 1, was " + capacity);
+		}
+		this.capacity = capacity;
+		this.ring = new Ring(capacity);
+	}
+
+	/**
+	 * Adds the element unless the queue is full
+	 *
+	 * @return whether the element was added
+	 */
+	public boolean offer(E element) {
+		if (element == null) {
+			throw new NullPointerException();
+		}
+		Ring ring = this.ring;
+		long tail = (long) TAIL.getVolatile(ring);
+		while (true) {
+			if (tail - (long) HEAD.getVolatile(ring) >= capacity) {
+				return false;
+			}
+			int index = (int) tail & ring.mask;
+			long difference = (long) SEQUENCE.getAcquire(ring.sequences, index) - tail;
+			if (difference == 0) {
+				if (TAIL.compareAndSet(ring, tail, tail + 1)) {
+					ring.elements[index] = element;
+					SEQUENCE.setRelease(ring.sequences, index, tail + 1);
+					return true;
+				}
+				tail = (long) TAIL.getVolatile(ring);
+			} else if (difference < 0) {
+				// The slot still holds the element from one lap ago
+				return false;
+			} else {
+				tail = (long) TAIL.getVolatile(ring);
+			}
+		}
+	}
+
+	/**
+	 * Removes and returns the oldest element, or null if the queue is empty
+	 */
+	@SuppressWarnings("unchecked")
+	public E poll() {
+		return (E) pollFrom(ring);
+	}
+
+	/**
+	 * Number of elements in the queue, read without walking it
+	 */
+	public int size() {
+		Ring ring = this.ring;
+		while (true) {
+			long head = (long) HEAD.getVolatile(ring);
+			long tail = (long) TAIL.getVolatile(ring);
+			// Retried if a consumer moved the head in between
+			if (head == (long) HEAD.getVolatile(ring)) {
+				return (int) Math.max(0, Math.min(tail - head, ring.elements.length));
+			}
+		}
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * Drops all elements
+	 */
+	public void clear() {
+		while (poll() != null) {
+		}
+	}
+
+	/**
+	 * Changes the capacity. Elements beyond a smaller capacity are dropped.
+	 */
+	public void updateSize(int newSize) {
+		if (newSize < 1) {
+			throw new IllegalArgumentException("Capacity must be at least 1, was " + newSize);
+		}
+		resizeLock.lock();
+		try {
+			Ring current = ring;
+			int length = current.elements.length;
+			capacity = newSize;
+			if (newSize <= length && newSize > length / 4) {
+				// Polling drops the oldest elements, which is fine for interchangeable objects
+				while (size() > newSize && poll() != null) {
+				}
+				return;
+			}
+			Ring resized = new Ring(newSize);
+			ring = resized;
+			// Late offers into the old ring are dropped with it
+			Object element;
+			while ((element = pollFrom(current)) != null) {
+				@SuppressWarnings("unchecked")
+				E moved = (E) element;
+				if (!offer(moved)) {
+					break;
+				}
+			}
+		} finally {
+			resizeLock.unlock();
+		}
+	}
+
+	private Object pollFrom(Ring ring) {
+		long head = (long) HEAD.getVolatile(ring);
+		while (true) {
+			int index = (int) head & ring.mask;
+			long difference = (long) SEQUENCE.getAcquire(ring.sequences, index) - (head + 1);
+			if (difference == 0) {
+				if (HEAD.compareAndSet(ring, head, head + 1)) {
+					Object element = ring.elements[index];
+					ring.elements[index] = null;
+					SEQUENCE.setRelease(ring.sequences, index, head + ring.mask + 1);
+					return element;
+				}
+			} else if (difference < 0) {
+				// The slot has not been filled since the last lap
+				return null;
+			}
+			head = (long) HEAD.getVolatile(ring);
+		}
+	}
+
+	// The positions are padded onto cache lines of their own through the class
+	// hierarchy, since the JVM lays out superclass fields first
+
+	private static class HeadPadding {
+		long p00, p01, p02, p03, p04, p05, p06, p07;
+	}
+
+	private static class Head extends HeadPadding {
+		// Position of the next element to poll
+		volatile long head;
+	}
+
+	private static class TailPadding extends Head {
+		long p10, p11, p12, p13, p14, p15, p16, p17;
+	}
+
+	private static class Tail extends TailPadding {
+		// Position of the next element to offer
+		volatile long tail;
+	}
+
+	private static class EndPadding extends Tail {
+		long p20, p21, p22, p23, p24, p25, p26, p27;
+	}
+
+	private static final class Ring extends EndPadding {
+		final Object[] elements;
+		// Equal to the position of the slot when free for a producer, one more when
+		// holding an element for a consumer
+		final long[] sequences;
+		final int mask;
+
+		Ring(int capacity) {
+			int length = Integer.highestOneBit(Math.max(1, capacity - 1)) << (capacity > 1 ? 1 : 0);
+			elements = new Object[length];
+			sequences = new long[length];
+			mask = length - 1;
+			for (int i = 0; i < length; i++) {
+				sequences[i] = i;
+			}
+		}
+	}
+}
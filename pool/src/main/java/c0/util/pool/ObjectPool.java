@@ -1,13 +1,20 @@
 package c0.util.pool;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
-import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
 /**
  * 
@@ -31,95 +38,227 @@ public class ObjectPool {
 
 	// ----------------------------------------------------------
 
-	protected Map<Class<? extends PooledObject<?>>, CappedBlockingQueue> poolMap = new ConcurrentHashMap<>();
-	protected ExecutorService returnExecutor = Executors.newSingleThreadExecutor();
+	protected Map<Class<? extends PooledObject<?>>, MpmcArrayQueue<PooledObject<?>>> poolMap = new ConcurrentHashMap<>();
+	protected ExecutorService returnExecutor = Executors.newSingleThreadExecutor(daemonThreadFactory("object-pool-return"));
+	// Classes returned through the return executor, all others return on the
+	// releasing thread
+	protected Map<Class<?>, ReturnMode> returnModeMap = new ConcurrentHashMap<>();
 
 	protected Map<Class<? extends PooledObject<?>>, Integer> objectPoolSizeMap = new ConcurrentHashMap<>();
-	protected Map<Class<? extends PooledObject<?>>, Integer> objectReferenceCountMap = new ConcurrentHashMap<>();
 
 	protected int defaultObjectsPooledPerType = 5;
 
-	private Daemon daemmon;
+	// Per-thread magazines of each class, in front of the shared queues in poolMap
+	protected Map<Class<?>, ThreadLocal<Magazine>> magazineMap = new ConcurrentHashMap<>();
+
+	// Registered factories, used instead of a constructor when a pool is empty
+	protected Map<Class<?>, PooledObjectFactory<?>> factoryMap = new ConcurrentHashMap<>();
+	// Constructors resolved for a class and the types of the arguments passed to
+	// get, bound as method handles taking the arguments as one array
+	protected Map<ConstructorKey, MethodHandle> constructorCache = new ConcurrentHashMap<>();
+
+	private record ConstructorKey(Class<?> type, List<Class<?>> argumentTypes) {
+	}
 
-	static void startDaemon() {
+	private Daemon daemmon;
 
+	/**
+	 * How released objects are reset and put back into their pool
+	 */
+	public enum ReturnMode {
+		/**
+		 * Resets the object and puts it back on the releasing thread, without locks
+		 * or allocation. The default.
+		 */
+		SYNCHRONOUS,
+		/**
+		 * Hands the object to a single return thread that resets it and puts it
+		 * back. Meant for classes whose {@link PooledObject#reset()} is too expensive
+		 * to run on the releasing thread.
+		 */
+		EXECUTOR
 	}
 
 	/**
 	 * Class handling management of long-running object pool tasks, such as dynamic
-	 * pool
+	 * pool sizing. Threads taking and returning objects only add to counters. The
+	 * daemon samples from them how many objects of each class are in use several
+	 * times per window, and once per window folds the peak and the misses into
+	 * moving averages. The pool is sized to peak average * 1.25 + miss average, or
+	 * the default size while the class is idle. A burst raises the peak average
+	 * right away, which then decays while no further bursts come. A pool that had
+	 * to drop returned objects for lack of room and then create new ones grows
+	 * right away too, at most fourfold per window. Classes given a size with
+	 * setPoolSize keep that size.
 	 */
 	public class Daemon {
 
-		private ExecutorService executor = Executors.newFixedThreadPool(2);
-		private boolean uiEnabled = false;
-
-		private LinkedList<Map<Class<? extends PooledObject<?>>, Integer>> requestsPerObjectHistory = new LinkedList<>();
-		private Map<Class<? extends PooledObject<?>>, Integer> requestsPerObject = new ConcurrentHashMap<>();
+		private static final long WINDOW_MILLIS = 1000;
+		private static final int SAMPLES_PER_WINDOW = 10;
+		// Weight of the latest window in the moving averages
+		private static final double ALPHA = 0.2;
+		// Room kept above the objects in use for objects sitting in other threads'
+		// magazines
+		private static final double HEADROOM = 1.25;
+		private static final int MAX_POOL_SIZE = 4096;
+
+		private final ScheduledExecutorService scheduler = Executors
+				.newSingleThreadScheduledExecutor(daemonThreadFactory("object-pool-daemon"));
+		private final Map<Class<?>, Demand> demandMap = new ConcurrentHashMap<>();
+		// Only used by the daemon thread
+		private int samples;
 
 		public Daemon() {
-			executor.submit(() -> {
-				writeToHistoryThread();
-			});
-			executor.submit(() -> {
-				resizeThread();
-			});
+			long sampleMillis = WINDOW_MILLIS / SAMPLES_PER_WINDOW;
+			scheduler.scheduleAtFixedRate(this::sample, sampleMillis, sampleMillis, TimeUnit.MILLISECONDS);
 		}
 
-		private void resizeThread(){
-			while(true){
-				try{
-					Thread.sleep(25000);
-				} 
-				catch (InterruptedException e){
-
-				} 
-				finally {
-
+		private void sample() {
+			// An exception would cancel the scheduled task
+			try {
+				if (++samples < SAMPLES_PER_WINDOW) {
+					for (Demand demand : demandMap.values()) {
+						demand.sample();
+					}
+				} else {
+					samples = 0;
+					recalculateSizes();
 				}
+			} catch (RuntimeException e) {
+				e.printStackTrace();
 			}
 		}
 
-		private void recalculateSizes(){
-			for(int i = 0; i < 5; i++){
-				Map<Class<? extends PooledObject<?>>, Integer> historyNode = requestsPerObjectHistory.get(i);
-				int objectCount = 0;
-				for(Map.Entry<Class<? extends PooledObject<?>>, Integer> entry : historyNode.entrySet()){
-					entry.getValue();
+		private void recalculateSizes() {
+			for (Map.Entry<Class<?>, Demand> entry : demandMap.entrySet()) {
+				int size = entry.getValue().nextSize();
+				MpmcArrayQueue<PooledObject<?>> queue = poolMap.get(entry.getKey());
+				if (queue != null && !objectPoolSizeMap.containsKey(entry.getKey())) {
+					queue.updateSize(size);
 				}
 			}
 		}
 
-		private void writeToHistoryThread(){
-			while(true){
-				try{
-					Thread.sleep(5000);
-					writeRequestsToHistory();
-				} 
-				catch(InterruptedException e){
+		protected void acquired(Class<?> clazz, boolean miss) {
+			demand(clazz).acquired(miss);
+		}
 
-				} 
-				finally {
+		protected void returned(Class<?> clazz) {
+			Demand demand = demandMap.get(clazz);
+			if (demand != null) {
+				demand.returned();
+			}
+		}
 
-				}
+		/**
+		 * Counter of the class's returned objects that were dropped because the pool
+		 * was full, incremented by the magazines
+		 */
+		protected LongAdder drops(Class<?> clazz) {
+			return demand(clazz).drops;
+		}
 
+		private Demand demand(Class<?> clazz) {
+			Demand demand = demandMap.get(clazz);
+			if (demand == null) {
+				demand = demandMap.computeIfAbsent(clazz, k -> new Demand());
 			}
+			return demand;
 		}
 
-		private void writeRequestsToHistory() {
-			requestsPerObjectHistory.push(requestsPerObject);
-			requestsPerObject.clear();
+		/**
+		 * The size the daemon last calculated for the class, or the default size
+		 * if it has not seen the class yet
+		 */
+		protected int adaptiveSize(Class<?> clazz) {
+			Demand demand = demandMap.get(clazz);
+			return demand == null ? defaultObjectsPooledPerType : demand.size;
 		}
 
-		protected void requested(Class<? extends PooledObject<?>> requestedType) {
-			executor.submit(() -> {
-				int requests = requestsPerObject.getOrDefault(requestedType, 0);
-				if(requests == 0){
-					requestsPerObject.put(requestedType, 1);
-				} else {
-					requestsPerObject.put(requestedType, requests++);
+		/**
+		 * Demand for one class, counted by the threads taking and returning objects
+		 * and evaluated by the daemon
+		 */
+		private final class Demand {
+			// Windows an object has to stay out to count as held for good or leaked
+			private static final int STUCK_WINDOWS = 10;
+
+			private final LongAdder acquisitions = new LongAdder();
+			private final LongAdder misses = new LongAdder();
+			private final LongAdder returns = new LongAdder();
+			private final LongAdder drops = new LongAdder();
+
+			// Only used by the daemon thread
+			private double acquisitionAverage;
+			private double missAverage;
+			private double peakAverage;
+			// Objects out of the pool at the end of the last window, and the most seen
+			// out during the current one
+			private long outstanding;
+			private long windowPeak;
+			private final long[] recentOutstanding = new long[STUCK_WINDOWS];
+			private int window;
+			private volatile int size = defaultObjectsPooledPerType;
+
+			void acquired(boolean miss) {
+				acquisitions.increment();
+				if (miss) {
+					misses.increment();
+				}
+			}
+
+			void returned() {
+				returns.increment();
+			}
+
+			/**
+			 * Records how many objects are out of the pool right now, read without
+			 * resetting the counters
+			 */
+			void sample() {
+				// Objects created outside the pool may be returned to it too
+				windowPeak = Math.max(windowPeak, outstanding + acquisitions.sum() - returns.sum());
+			}
+
+			int nextSize() {
+				long acquired = acquisitions.sumThenReset();
+				long missed = misses.sumThenReset();
+				long dropped = drops.sumThenReset();
+				acquisitionAverage = average(acquisitionAverage, acquired);
+				missAverage = average(missAverage, missed);
+				outstanding = Math.max(0, outstanding + acquired - returns.sumThenReset());
+				long peak = Math.max(windowPeak, outstanding);
+				// The next window's peak starts from the objects still out
+				windowPeak = outstanding;
+
+				// Objects that stayed out through all recent windows, leaked or kept for
+				// good, will not come back and need no room in the pool
+				recentOutstanding[window] = outstanding;
+				window = (window + 1) % STUCK_WINDOWS;
+				long stuck = outstanding;
+				for (long sample : recentOutstanding) {
+					stuck = Math.min(stuck, sample);
+				}
+				long peakInUse = peak - stuck;
+				// A burst raises the average right away, it only decays without one
+				peakAverage = Math.max(peakInUse, average(peakAverage, peakInUse));
+
+				long target = acquisitionAverage < 1 ? defaultObjectsPooledPerType
+						: (long) Math.ceil(peakAverage * HEADROOM + missAverage);
+				long next = target;
+				// Objects thrown away for lack of room and created again were needed. The
+				// growth is capped since the counts add up over the whole window
+				long shortage = Math.min(missed, dropped);
+				if (shortage > 0) {
+					next = Math.max(target, size + Math.min(shortage, 3L * size));
 				}
-			});
+				size = (int) Math.max(defaultObjectsPooledPerType, Math.min(MAX_POOL_SIZE, next));
+				return size;
+			}
+
+			private static double average(double average, double sample) {
+				return average + ALPHA * (sample - average);
+			}
 		}
 
 	}
@@ -128,74 +267,266 @@ public class ObjectPool {
 	 * Static method to set the pool size for a specific PooledObject class.
 	 */
 	static void setPoolSize(Class<? extends PooledObject<?>> clazz, int poolSize) {
-		instance.objectPoolSizeMap.compute(clazz, (k, v) -> poolSize);
+		instance().objectPoolSizeMap.compute(clazz, (k, v) -> poolSize);
+		MpmcArrayQueue<PooledObject<?>> queue = instance().poolMap.get(clazz);
+		if (queue != null) {
+			queue.updateSize(poolSize);
+		}
+	}
+
+	/**
+	 * Sets how many objects handed out by the pool are tracked for leaks, one in
+	 * every interval, 1 to track all and 0 to disable. Objects extending
+	 * {@link AbstractPooledObject} that are garbage collected without being
+	 * released are reported with the stack trace of where they were acquired.
+	 * Defaults to 128.
+	 */
+	public static void setLeakDetectionInterval(int interval) {
+		LeakDetector.setSamplingInterval(interval);
+	}
+
+	/**
+	 * Static method to set how released objects of a PooledObject class are put
+	 * back into the pool.
+	 */
+	public static void setReturnMode(Class<? extends PooledObject<?>> clazz, ReturnMode returnMode) {
+		if (returnMode == ReturnMode.SYNCHRONOUS) {
+			instance().returnModeMap.remove(clazz);
+		} else {
+			instance().returnModeMap.put(clazz, returnMode);
+		}
 	}
 
 	// ----------------------------------------------------------
 
+	/**
+	 * Registers the factory that creates new objects of the class when its pool is
+	 * empty and no constructor arguments are passed
+	 */
+	public static <T extends PooledObject<?>> void registerFactory(Class<T> clazz, PooledObjectFactory<? extends T> factory) {
+		instance().factoryMap.put(clazz, factory);
+	}
+
+	/**
+	 * Registers a supplier, for example a constructor reference, as the factory of
+	 * the class
+	 */
+	public static <T extends PooledObject<?>> void register(Class<T> clazz, Supplier<? extends T> supplier) {
+		registerFactory(clazz, PooledObjectFactory.of(supplier));
+	}
+
+	/**
+	 * Static method to retrieve an object from the pool or create a new one with
+	 * its registered factory or its no-argument constructor.
+	 */
+	public static <T extends PooledObject<?>> T get(Class<T> clazz) {
+		T obj = poll(clazz);
+		if (obj != null) {
+			return obj;
+		}
+		PooledObjectFactory<?> factory = instance().factoryMap.get(clazz);
+		if (factory != null) {
+			return acquired(clazz.cast(factory.create()), true);
+		}
+		return create(clazz, new Object[0]);
+	}
+
+	/**
+	 * Static method to retrieve an object from the pool or create a new one with
+	 * the passed factory.
+	 */
+	public static <T extends PooledObject<?>> T getOrCreate(Class<T> clazz, PooledObjectFactory<? extends T> factory) {
+		T obj = poll(clazz);
+		if (obj != null) {
+			return obj;
+		}
+		return acquired(factory.create(), true);
+	}
+
 	/**
 	 * Static method to retrieve an object from the pool or create a new one.
 	 */
-	static <T extends PooledObject<T>> T get(Class<T> clazz, Object... params) {
-		Queue<PooledObject<?>> queue = instance.poolMap.get(clazz);
-		T obj;
+	public static <T extends PooledObject<?>> T get(Class<T> clazz, Object... params) {
+		T obj = poll(clazz);
+		if (obj != null) {
+			return obj;
+		}
+		if (params.length == 0) {
+			return get(clazz);
+		}
+		return create(clazz, params);
+	}
 
-		// Reinitialize a pooled object
-		if (queue != null && (obj = clazz.cast(queue.poll())) != null) {
+	/**
+	 * Reinitializes and returns a pooled object, or null if the pool is empty
+	 */
+	private static <T extends PooledObject<?>> T poll(Class<T> clazz) {
+		T obj = clazz.cast(instance().magazine(clazz).pop());
+		if (obj != null) {
 			obj.init();
-			return obj;
+			acquired(obj, false);
+		}
+		return obj;
+	}
+
+	/**
+	 * Resets the reference count of an object handed out by the pool, samples it
+	 * for leak detection and counts it for the daemon
+	 * 
+	 * @param miss whether the object had to be created because the pool was empty
+	 */
+	private static <T extends PooledObject<?>> T acquired(T obj, boolean miss) {
+		if (obj instanceof AbstractPooledObject<?> counted) {
+			counted.acquired();
+		}
+		instance().daemmon.acquired(obj.getClass(), miss);
+		return obj;
+	}
+
+	/**
+	 * Resets a released object and puts it back into the pool according to its
+	 * class's {@link ReturnMode}
+	 */
+	protected void returnObject(PooledObject<?> obj) {
+		if (returnModeMap.get(obj.getClass()) == ReturnMode.EXECUTOR) {
+			returnExecutor.submit(() -> resetAndRecycle(obj));
+		} else {
+			resetAndRecycle(obj);
 		}
+	}
 
-		// Create a new object
+	// An object that fails to reset is not pooled again
+	private void resetAndRecycle(PooledObject<?> obj) {
+		daemmon.returned(obj.getClass());
 		try {
-			Constructor<?> constr[] = clazz.getConstructors();
-
-			// check for constructors matching the amount of parameters
-			for (Constructor<?> constructor : constr) {
-				Class<?>[] parameterTypes = constructor.getParameterTypes();
-				if (parameterTypes.length == params.length) {
-					// Before calling constructor, check if the argument types match too
-					boolean allParametersMatch = true;
-					for (int i = 0; i < parameterTypes.length; i++) {
-						Class<?> parameterType = parameterTypes[i];
-						Object arg = params[i];
-						if (parameterType.isPrimitive()) {
-							// Handle primitive types
-							if (!getPrimitiveWrapperClass(parameterType)
-									.isAssignableFrom(arg.getClass())) {
-								allParametersMatch = false;
-								break;
-							}
-						} else {
-							// Handle reference types
-							if (!parameterType.isAssignableFrom(arg.getClass())) {
-								allParametersMatch = false;
-								break;
-							}
-						}
-					}
-					// If all parameter types match, use the constructor to init a new object
-					if (allParametersMatch) {
-						try {
-							@SuppressWarnings("unchecked")
-							Constructor<T> typedConstructor = (Constructor<T>) constructor;
-							instance().daemmon.requested(clazz); // Notify daemon to note type that was created
-							return typedConstructor.newInstance(params);
-						} catch (InstantiationException | IllegalAccessException
-								| InvocationTargetException e) {
-							e.printStackTrace();
-						}
+			obj.reset();
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			return;
+		}
+		recycle(obj);
+	}
 
-					}
+	/**
+	 * Puts a reset object back into the calling thread's magazine
+	 */
+	@SuppressWarnings("unchecked")
+	protected void recycle(PooledObject<?> obj) {
+		magazine((Class<? extends PooledObject<?>>) obj.getClass()).push(obj);
+	}
 
+	/**
+	 * The calling thread's magazine for the class, holding half the class's
+	 * current pool size up to {@link Magazine#MAX_SIZE}
+	 */
+	protected Magazine magazine(Class<? extends PooledObject<?>> clazz) {
+		ThreadLocal<Magazine> magazine = magazineMap.get(clazz);
+		if (magazine == null) {
+			magazine = magazineMap.computeIfAbsent(clazz, k -> ThreadLocal
+					.withInitial(() -> new Magazine(depot(clazz), () -> poolSize(clazz) / 2, daemmon.drops(clazz))));
+		}
+		return magazine.get();
+	}
+
+	/**
+	 * The class's shared queue, which magazines take from and return to
+	 */
+	protected MpmcArrayQueue<PooledObject<?>> depot(Class<? extends PooledObject<?>> clazz) {
+		MpmcArrayQueue<PooledObject<?>> queue = poolMap.get(clazz);
+		if (queue == null) {
+			queue = poolMap.computeIfAbsent(clazz, k -> new MpmcArrayQueue<>(poolSize(k)));
+		}
+		return queue;
+	}
+
+	private int poolSize(Class<? extends PooledObject<?>> clazz) {
+		Integer poolSize = objectPoolSizeMap.get(clazz);
+		return poolSize != null ? poolSize : daemmon.adaptiveSize(clazz);
+	}
+
+	private static ThreadFactory daemonThreadFactory(String name) {
+		return runnable -> {
+			Thread thread = new Thread(runnable, name);
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	/**
+	 * Creates a new object through the constructor matching the arguments. The
+	 * constructor is only looked up the first time a class is created with
+	 * arguments of the same types.
+	 */
+	private static <T extends PooledObject<?>> T create(Class<T> clazz, Object[] params) {
+		Class<?>[] argumentTypes = new Class<?>[params.length];
+		for (int i = 0; i < params.length; i++) {
+			// Null arguments match any reference type
+			argumentTypes[i] = params[i] == null ? Void.class : params[i].getClass();
+		}
+		MethodHandle constructor = instance().constructorCache.computeIfAbsent(
+				new ConstructorKey(clazz, Arrays.asList(argumentTypes)), ObjectPool::resolveConstructor);
+
+		try {
+			return acquired(clazz.cast(constructor.invokeExact(params)), true);
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new RuntimeException("Failed to create pooled object", e);
+		}
+	}
+
+	private static MethodHandle resolveConstructor(ConstructorKey key) {
+		// check for constructors matching the amount of parameters
+		for (Constructor<?> constructor : key.type().getConstructors()) {
+			Class<?>[] parameterTypes = constructor.getParameterTypes();
+			if (parameterTypes.length != key.argumentTypes().size()) {
+				continue;
+			}
+			// Before using the constructor, check if the argument types match too
+			boolean allParametersMatch = true;
+			for (int i = 0; i < parameterTypes.length; i++) {
+				Class<?> parameterType = parameterTypes[i];
+				Class<?> argumentType = key.argumentTypes().get(i);
+				if (parameterType.isPrimitive()) {
+					// Handle primitive types
+					if (argumentType == Void.class
+							|| !getPrimitiveWrapperClass(parameterType).isAssignableFrom(argumentType)) {
+						allParametersMatch = false;
+						break;
+					}
+				} else if (argumentType != Void.class && !parameterType.isAssignableFrom(argumentType)) {
+					// Handle reference types
+					allParametersMatch = false;
+					break;
 				}
 			}
-			throw new RuntimeException("No constructor found for " + clazz.getName()
-					+ " with the specified parameters");
+			if (allParametersMatch) {
+				return bind(constructor);
+			}
+		}
+		throw new RuntimeException("No constructor found for " + key.type().getName()
+				+ " with the specified parameters");
+	}
 
-		} catch (Exception e) {
-			throw new RuntimeException("Failed to create pooled object", e);
+	/**
+	 * Binds the constructor as a handle of type (Object[])Object, unboxing
+	 * primitive arguments
+	 */
+	private static MethodHandle bind(Constructor<?> constructor) {
+		MethodHandle handle;
+		try {
+			handle = MethodHandles.lookup().unreflectConstructor(constructor);
+		} catch (IllegalAccessException e) {
+			// Public constructor of a class that is not accessible from here
+			try {
+				constructor.setAccessible(true);
+				handle = MethodHandles.lookup().unreflectConstructor(constructor);
+			} catch (RuntimeException | IllegalAccessException inaccessible) {
+				throw new RuntimeException("Failed to create pooled object", inaccessible);
+			}
 		}
+		return handle.asSpreader(Object[].class, constructor.getParameterCount())
+				.asType(MethodType.methodType(Object.class, Object[].class));
 	}
 
 	/**
@@ -230,27 +561,12 @@ public class ObjectPool {
 
 	// ----------------------------------------------------------
 
-	private static void shrinkPoolSizes(int newMaxSize) {
-		for (Map.Entry<Class<? extends PooledObject<?>>, CappedBlockingQueue> entry : instance.poolMap
-				.entrySet()) {
-			CappedBlockingQueue queue = entry.getValue();
-			//queue.shrink(newMaxSize);
-		}
-	}
-
-	private static void expandPoolSized(int newMaxSize) {
-		for (Map.Entry<Class<? extends PooledObject<?>>, CappedBlockingQueue> entry : instance.poolMap
-				.entrySet()) {
-			CappedBlockingQueue queue = entry.getValue();
-			//queue.shrink(newMaxSize);
-		}
-	}
-
 	/**
 	 * Purges all objects and object size mappings from the pools
 	 */
 	private static void purge() {
 		instance.poolMap.clear();
+		instance.magazineMap.clear();
 		instance.objectPoolSizeMap.clear();
 	}
 
@@ -1,6 +1,6 @@
 package c0.util.pool;
 
-public class PooledObjExample implements PooledObject<PooledObjExample>, PooledObjectFactory.Constructor{
+public class PooledObjExample extends AbstractPooledObject<PooledObjExample> implements PooledObjectFactory.Constructor{
 
     private String name;
     private int id;
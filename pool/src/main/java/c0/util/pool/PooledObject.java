@@ -8,50 +8,34 @@ public interface PooledObject<T extends PooledObject<T>> extends Initializable<T
 
     ObjectPool objectPool = ObjectPool.instance();
     
-    @SuppressWarnings("unchecked")
+    /**
+     * Adds a reference to the object. References are counted per instance, which
+     * an interface cannot do, so this default fails. Extend
+     * {@link AbstractPooledObject} for objects that are shared between holders.
+     */
     default T retain() {
-        Class<T> returnedObjectClazz = (Class<T>) this.getClass();
-
-        int referenceCount = objectPool.objectReferenceCountMap.getOrDefault(returnedObjectClazz, 0);
-
-        if (referenceCount == 0) {
-            objectPool.objectReferenceCountMap.put(returnedObjectClazz, 1);
-        } else {
-            objectPool.objectReferenceCountMap.put(returnedObjectClazz, ++referenceCount);
-        }
-
-        return (T)this;
+        throw new UnsupportedOperationException(getClass().getName()
+                + " does not count references, extend AbstractPooledObject to retain it");
     }
 
+    /**
+     * Removes a reference and returns the object to the pool when none are left.
+     * Without a per-instance count, as in this default, the caller is the only
+     * holder and the object is returned right away.
+     */
     @SuppressWarnings("unchecked")
     default T release() {
-        
-        Class<T> returnedObjectClazz = (Class<T>) this.getClass();
-        int referenceCount = objectPool.objectReferenceCountMap.get(returnedObjectClazz);
-
-        // remove a reference
-        objectPool.objectReferenceCountMap.put(returnedObjectClazz, --referenceCount);
-
-        if (referenceCount <= 0) {
-            this.returnToPool();
-        }
+        this.returnToPool();
         return (T)this;
     }
 
     /**
-     * Default method to return the object to the pool.
+     * Default method to return the object to the pool. By default it is reset
+     * and goes into the magazine of the returning thread, which passes it on to
+     * the shared pool when full. See {@link ObjectPool.ReturnMode}.
      */
     default void returnToPool() {
-        objectPool.returnExecutor.submit(() -> {
-            @SuppressWarnings("unchecked")
-            Class<T> returnedObjectClazz = (Class<T>) this.getClass();
-            this.reset();
-            objectPool.poolMap.computeIfAbsent(returnedObjectClazz,
-                    k -> new CappedBlockingQueue(
-                            objectPool.objectPoolSizeMap.getOrDefault(returnedObjectClazz,
-                                    objectPool.defaultObjectsPooledPerType)))
-                    .offer(this);
-        });
+        objectPool.returnObject(this);
     }
 
     /**
@@ -1,19 +1,78 @@
 package c0.util.pool;
 
-public interface PooledObjectFactory<T extends PooledObject<T>> {
+import java.util.function.Supplier;
 
+/**
+ * Creates new instances of a pooled type when its pool is empty. A factory
+ * registered with {@link ObjectPool#registerFactory(Class, PooledObjectFactory)}
+ * is used instead of looking up a constructor of the type.
+ */
+@FunctionalInterface
+public interface PooledObjectFactory<T extends PooledObject<?>> {
+
+    T create();
+
+    /**
+     * Factory calling the supplier, for example a constructor reference
+     */
+    static <T extends PooledObject<?>> PooledObjectFactory<T> of(Supplier<? extends T> supplier) {
+        return supplier::get;
+    }
+
+    /**
+     * Factory creating every object from the same value, for example
+     * "PooledObjectFactory.of(Buffer::new, 4096)"
+     */
+    static <T extends PooledObject<?>, I> PooledObjectFactory<T> of(Initializer<? extends T, I> initializer, I value) {
+        return () -> initializer.init(value);
+    }
+
+    /**
+     * Creates an object from a value
+     */
+    @FunctionalInterface
     public interface Initializer<Obj, Init>{
         Obj init(Init constructor);
     }
 
+    /**
+     * Marker for pooled types that are meant to be created through their constructors
+     */
     public interface Constructor{
 
     }
 
-    public abstract class AbstractFactory<T extends PooledObject<T>> implements PooledObjectFactory<T>{
+    /**
+     * Base for factories of one type, which can register themselves with the pool
+     * and take objects from it
+     */
+    public abstract class AbstractFactory<T extends PooledObject<?>> implements PooledObjectFactory<T>{
 
-    }
+        private final Class<T> type;
+
+        protected AbstractFactory(Class<T> type) {
+            this.type = type;
+        }
+
+        public Class<T> getType() {
+            return type;
+        }
 
+        /**
+         * Registers this factory for its type
+         */
+        public AbstractFactory<T> register() {
+            ObjectPool.registerFactory(type, this);
+            return this;
+        }
 
+        /**
+         * Takes an object from the pool, created by this factory if the pool is empty
+         */
+        public T get() {
+            return ObjectPool.getOrCreate(type, this);
+        }
+
+    }
 
 }
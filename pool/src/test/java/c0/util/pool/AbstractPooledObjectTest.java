@@ -0,0 +1,91 @@
+package c0.util.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class AbstractPooledObjectTest {
+
+	public static class Buffer extends AbstractPooledObject<Buffer> {
+		int resets;
+
+		@Override
+		public Buffer init() {
+			return this;
+		}
+
+		@Override
+		public void reset() {
+			resets++;
+		}
+	}
+
+	@Test
+	public void acquirerHoldsTheFirstReference() {
+		Buffer buffer = ObjectPool.get(Buffer.class);
+		int resets = buffer.resets;
+		assertEquals(1, buffer.referenceCount());
+		buffer.retain();
+		buffer.release();
+		assertEquals(1, buffer.referenceCount());
+		assertEquals(resets, buffer.resets);
+
+		buffer.release();
+		assertEquals(0, buffer.referenceCount());
+		assertEquals(resets + 1, buffer.resets);
+	}
+
+	@Test
+	public void objectsCreatedOutsideThePoolStartOwned() {
+		Buffer buffer = new Buffer();
+		assertEquals(1, buffer.referenceCount());
+		buffer.release();
+		assertEquals(1, buffer.resets);
+	}
+
+	@Test
+	public void doubleReleaseFails() {
+		Buffer buffer = ObjectPool.get(Buffer.class);
+		int resets = buffer.resets;
+		buffer.release();
+		try {
+			buffer.release();
+			fail("Released twice");
+		} catch (IllegalStateException expected) {
+		}
+		try {
+			buffer.retain();
+			fail("Retained after returning to the pool");
+		} catch (IllegalStateException expected) {
+		}
+		// Pooled once, not twice
+		assertEquals(resets + 1, buffer.resets);
+	}
+
+	@Test
+	public void staleReleaseCannotReturnAnObjectThatIsStillRetained() {
+		Buffer first = ObjectPool.get(Buffer.class);
+		int resets = first.resets;
+		first.release();
+		Buffer second = ObjectPool.get(Buffer.class);
+		assertSame(first, second);
+
+		// The new holder hands the object on, then the old holder releases again
+		second.retain();
+		first.release();
+		assertEquals(1, second.referenceCount());
+		assertEquals(resets + 1, second.resets);
+
+		second.release();
+		assertEquals(resets + 2, second.resets);
+		// The holder whose reference was taken finds out instead of pooling it twice
+		try {
+			second.release();
+			fail("Released more often than retained");
+		} catch (IllegalStateException expected) {
+		}
+		assertEquals(resets + 2, second.resets);
+	}
+}
@@ -0,0 +1,99 @@
+package c0.util.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.Test;
+
+public class MagazineTest {
+
+	public static class Item implements PooledObject<Item> {
+		static final AtomicInteger created = new AtomicInteger();
+
+		public Item() {
+			created.incrementAndGet();
+		}
+
+		@Override
+		public Item init() {
+			return this;
+		}
+
+		@Override
+		public void reset() {
+		}
+	}
+
+	public static class Plain implements PooledObject<Plain> {
+		@Override
+		public Plain init() {
+			return this;
+		}
+
+		@Override
+		public void reset() {
+		}
+	}
+
+	@Test
+	public void workingSetIsReusedAcrossThreads() throws InterruptedException {
+		Item[] items = new Item[5];
+		for (int round = 0; round < 100; round++) {
+			for (int i = 0; i < items.length; i++) {
+				items[i] = ObjectPool.get(Item.class);
+			}
+			// Released on a thread that never takes items, so they go to the depot
+			Thread releaser = new Thread(() -> {
+				for (Item item : items) {
+					item.release();
+				}
+			});
+			releaser.start();
+			releaser.join();
+		}
+		assertEquals(items.length, Item.created.get());
+	}
+
+	@Test
+	public void sizeFollowsTheCurrentTarget() {
+		MpmcArrayQueue<PooledObject<?>> depot = new MpmcArrayQueue<>(100);
+		AtomicInteger size = new AtomicInteger(2);
+		Magazine magazine = new Magazine(depot, size::get, new LongAdder());
+
+		// Taking first makes the magazine keep what this thread returns
+		assertNull(magazine.pop());
+		for (int i = 0; i < 10; i++) {
+			magazine.push(new Plain());
+		}
+		assertEquals(8, depot.size());
+
+		size.set(20);
+		assertNotNull(magazine.pop());
+		assertNotNull(magazine.pop());
+		// Refills half of the new size, as far as the depot has objects
+		assertNotNull(magazine.pop());
+		assertEquals(0, depot.size());
+		for (int i = 0; i < 13; i++) {
+			magazine.push(new Plain());
+		}
+		assertEquals(0, depot.size());
+		magazine.push(new Plain());
+		assertEquals(10, depot.size());
+	}
+
+	@Test
+	public void sizeIsCapped() {
+		MpmcArrayQueue<PooledObject<?>> depot = new MpmcArrayQueue<>(1000);
+		Magazine magazine = new Magazine(depot, () -> 500, new LongAdder());
+		assertNull(magazine.pop());
+		for (int i = 0; i <= Magazine.MAX_SIZE; i++) {
+			magazine.push(new Plain());
+		}
+		// Full at MAX_SIZE, the next push spills half
+		assertEquals(Magazine.MAX_SIZE / 2, depot.size());
+	}
+}
@@ -0,0 +1,197 @@
+package c0.util.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.Test;
+
+public class MpmcArrayQueueTest {
+
+	private static final int PRODUCERS = 3;
+	private static final int CONSUMERS = 3;
+	private static final int PER_PRODUCER = 100_000;
+
+	@Test
+	public void pollsInOfferOrder() {
+		MpmcArrayQueue<Integer> queue = new MpmcArrayQueue<>(8);
+		for (int lap = 0; lap < 3; lap++) {
+			for (int i = 0; i < 8; i++) {
+				assertTrue(queue.offer(lap * 8 + i));
+			}
+			assertFalse(queue.offer(-1));
+			assertEquals(8, queue.size());
+			for (int i = 0; i < 8; i++) {
+				assertEquals(lap * 8 + i, (int) queue.poll());
+			}
+			assertNull(queue.poll());
+			assertTrue(queue.isEmpty());
+		}
+	}
+
+	@Test
+	public void capacityNeedNotBeAPowerOfTwo() {
+		MpmcArrayQueue<Integer> queue = new MpmcArrayQueue<>(5);
+		for (int i = 0; i < 5; i++) {
+			assertTrue(queue.offer(i));
+		}
+		assertFalse(queue.offer(5));
+		assertEquals(0, (int) queue.poll());
+		assertTrue(queue.offer(5));
+	}
+
+	@Test
+	public void resizingKeepsElementsThatStillFit() {
+		MpmcArrayQueue<Integer> queue = new MpmcArrayQueue<>(8);
+		for (int i = 0; i < 8; i++) {
+			queue.offer(i);
+		}
+		// Within the ring's length only the limit moves, dropping the oldest
+		queue.updateSize(6);
+		assertEquals(6, queue.size());
+		assertEquals(2, (int) queue.poll());
+		assertTrue(queue.offer(8));
+		assertFalse(queue.offer(9));
+
+		// Larger sizes move the elements to a new ring in order
+		queue.updateSize(100);
+		assertEquals(100, queue.capacity());
+		int expected = 3;
+		Integer element;
+		while ((element = queue.poll()) != null) {
+			assertEquals(expected++, (int) element);
+		}
+		assertEquals(9, expected);
+	}
+
+	@Test
+	public void concurrentProducersAndConsumersLoseAndRepeatNothing() throws InterruptedException {
+		MpmcArrayQueue<Integer> queue = new MpmcArrayQueue<>(64);
+		int total = PRODUCERS * PER_PRODUCER;
+		AtomicIntegerArray seen = new AtomicIntegerArray(total);
+		CountDownLatch consumed = new CountDownLatch(total);
+		AtomicBoolean outOfOrder = new AtomicBoolean();
+
+		List<Thread> threads = new ArrayList<>();
+		for (int p = 0; p < PRODUCERS; p++) {
+			int first = p * PER_PRODUCER;
+			threads.add(new Thread(() -> {
+				for (int i = first; i < first + PER_PRODUCER; i++) {
+					while (!queue.offer(i)) {
+						Thread.yield();
+					}
+				}
+			}));
+		}
+		for (int c = 0; c < CONSUMERS; c++) {
+			threads.add(new Thread(() -> {
+				// Elements of one producer reach one consumer in the order offered
+				int[] last = new int[PRODUCERS];
+				Arrays.fill(last, -1);
+				while (consumed.getCount() > 0) {
+					Integer element = queue.poll();
+					if (element == null) {
+						Thread.yield();
+						continue;
+					}
+					int producer = element / PER_PRODUCER;
+					if (element <= last[producer]) {
+						outOfOrder.set(true);
+					}
+					last[producer] = element;
+					seen.incrementAndGet(element);
+					consumed.countDown();
+				}
+			}));
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join(60_000);
+		}
+
+		assertEquals(0, consumed.getCount());
+		for (int i = 0; i < total; i++) {
+			assertEquals(1, seen.get(i));
+		}
+		assertFalse(outOfOrder.get());
+		assertTrue(queue.isEmpty());
+	}
+
+	@Test
+	public void resizingWhileInUseNeverDuplicates() throws InterruptedException {
+		MpmcArrayQueue<Integer> queue = new MpmcArrayQueue<>(16);
+		int total = PRODUCERS * PER_PRODUCER;
+		AtomicIntegerArray seen = new AtomicIntegerArray(total);
+		AtomicBoolean producing = new AtomicBoolean(true);
+		CountDownLatch producersDone = new CountDownLatch(PRODUCERS);
+
+		List<Thread> threads = new ArrayList<>();
+		for (int p = 0; p < PRODUCERS; p++) {
+			int first = p * PER_PRODUCER;
+			threads.add(new Thread(() -> {
+				for (int i = first; i < first + PER_PRODUCER; i++) {
+					// Full queues drop elements, like a pool dropping returned objects
+					if (!queue.offer(i)) {
+						Thread.yield();
+					}
+				}
+				producersDone.countDown();
+			}));
+		}
+		for (int c = 0; c < CONSUMERS; c++) {
+			threads.add(new Thread(() -> {
+				while (producing.get() || !queue.isEmpty()) {
+					Integer element = queue.poll();
+					if (element == null) {
+						Thread.yield();
+					} else {
+						seen.incrementAndGet(element);
+					}
+				}
+			}));
+		}
+		Thread resizer = new Thread(() -> {
+			int[] sizes = { 4, 64, 3, 1000, 16, 2, 300 };
+			for (int i = 0; producersDone.getCount() > 0; i++) {
+				queue.updateSize(sizes[i % sizes.length]);
+				Thread.yield();
+			}
+		});
+		threads.add(resizer);
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		producersDone.await();
+		resizer.join(60_000);
+		producing.set(false);
+		for (Thread thread : threads) {
+			thread.join(60_000);
+		}
+
+		// Elements may be dropped while rings are swapped, but never delivered twice
+		int delivered = 0;
+		for (int i = 0; i < total; i++) {
+			assertTrue(seen.get(i) <= 1);
+			delivered += seen.get(i);
+		}
+		assertTrue(delivered > 0);
+		assertTrue(queue.size() <= queue.capacity());
+
+		// Still usable at the size it was left with
+		queue.clear();
+		for (int i = 0; i < queue.capacity(); i++) {
+			assertTrue(queue.offer(i));
+		}
+		assertFalse(queue.offer(-1));
+	}
+}
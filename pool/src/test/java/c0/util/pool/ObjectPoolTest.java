@@ -0,0 +1,270 @@
+package c0.util.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class ObjectPoolTest {
+
+	// Every test uses its own classes, the pool is shared by the whole JVM
+	public static class Supplied extends AbstractPooledObject<Supplied> {
+		static final AtomicInteger created = new AtomicInteger();
+
+		public Supplied() {
+			created.incrementAndGet();
+		}
+
+		@Override
+		public Supplied init() {
+			return this;
+		}
+
+		@Override
+		public void reset() {
+		}
+	}
+
+	public static class Sized extends AbstractPooledObject<Sized> {
+		final int capacity;
+
+		public Sized(int capacity) {
+			this.capacity = capacity;
+		}
+
+		@Override
+		public Sized init() {
+			return this;
+		}
+
+		@Override
+		public void reset() {
+		}
+	}
+
+	public static class Made extends AbstractPooledObject<Made> {
+		@Override
+		public Made init() {
+			return this;
+		}
+
+		@Override
+		public void reset() {
+		}
+	}
+
+	public static class Named extends AbstractPooledObject<Named> {
+		final String name;
+		final int size;
+
+		public Named(String name) {
+			this(name, -1);
+		}
+
+		public Named(String name, int size) {
+			this.name = name;
+			this.size = size;
+		}
+
+		@Override
+		public Named init() {
+			return this;
+		}
+
+		@Override
+		public void reset() {
+		}
+	}
+
+	public static class Returned extends AbstractPooledObject<Returned> {
+		volatile String resetBy;
+		final CountDownLatch reset = new CountDownLatch(1);
+
+		@Override
+		public Returned init() {
+			return this;
+		}
+
+		@Override
+		public void reset() {
+			resetBy = Thread.currentThread().getName();
+			reset.countDown();
+		}
+	}
+
+	public static class Synchronous extends Returned {
+	}
+
+	public static class Handed extends Returned {
+	}
+
+	public static class Passed extends AbstractPooledObject<Passed> {
+		@Override
+		public Passed init() {
+			return this;
+		}
+
+		@Override
+		public void reset() {
+		}
+	}
+
+	public static class Kept extends AbstractPooledObject<Kept> {
+		@Override
+		public Kept init() {
+			return this;
+		}
+
+		@Override
+		public void reset() {
+		}
+	}
+
+	public static class MadeFactory extends PooledObjectFactory.AbstractFactory<Made> {
+		final AtomicInteger created = new AtomicInteger();
+
+		MadeFactory() {
+			super(Made.class);
+		}
+
+		@Override
+		public Made create() {
+			created.incrementAndGet();
+			return new Made();
+		}
+	}
+
+	@Test
+	public void registeredSupplierCreatesObjectsWhenThePoolIsEmpty() {
+		ObjectPool.register(Supplied.class, Supplied::new);
+		Supplied first = ObjectPool.get(Supplied.class);
+		assertEquals(1, Supplied.created.get());
+		assertEquals(1, first.referenceCount());
+
+		// Released objects are taken again before anything is created
+		first.release();
+		assertSame(first, ObjectPool.get(Supplied.class));
+		assertEquals(1, Supplied.created.get());
+	}
+
+	@Test
+	public void initializerFactoryPassesItsValue() {
+		ObjectPool.registerFactory(Sized.class, PooledObjectFactory.of(Sized::new, 4096));
+		assertEquals(4096, ObjectPool.get(Sized.class).capacity);
+	}
+
+	@Test
+	public void typedFactoryRegistersItselfAndFillsEmptyPools() {
+		MadeFactory factory = new MadeFactory();
+		Made made = factory.get();
+		assertEquals(1, factory.created.get());
+		made.release();
+		assertSame(made, factory.get());
+		assertEquals(1, factory.created.get());
+
+		factory.register();
+		ObjectPool.get(Made.class);
+		assertEquals(2, factory.created.get());
+	}
+
+	@Test
+	public void constructorIsResolvedOncePerArgumentTypes() {
+		ObjectPool pool = ObjectPool.instance();
+		int cached = pool.constructorCache.size();
+
+		Named first = ObjectPool.get(Named.class, "first");
+		Named second = ObjectPool.get(Named.class, "second");
+		assertEquals("first", first.name);
+		assertEquals("second", second.name);
+		assertEquals(cached + 1, pool.constructorCache.size());
+
+		// Other argument types resolve another constructor, a boxed argument matches
+		// a primitive parameter
+		Named sized = ObjectPool.get(Named.class, "sized", 8);
+		assertEquals(8, sized.size);
+		assertEquals(cached + 2, pool.constructorCache.size());
+
+		// A null argument matches any reference parameter
+		assertNull(ObjectPool.get(Named.class, (Object) null).name);
+		assertEquals(cached + 3, pool.constructorCache.size());
+	}
+
+	@Test
+	public void missingConstructorFails() {
+		try {
+			ObjectPool.get(Named.class, 1.5);
+			fail("Created without a matching constructor");
+		} catch (RuntimeException expected) {
+		}
+	}
+
+	@Test
+	public void synchronousReturnResetsOnTheReleasingThread() {
+		Synchronous object = ObjectPool.get(Synchronous.class);
+		object.release();
+		assertEquals(Thread.currentThread().getName(), object.resetBy);
+		assertSame(object, ObjectPool.get(Synchronous.class));
+	}
+
+	@Test
+	public void executorReturnResetsOnTheReturnThread() throws InterruptedException {
+		ObjectPool.setReturnMode(Handed.class, ObjectPool.ReturnMode.EXECUTOR);
+		Handed object = ObjectPool.get(Handed.class);
+		object.release();
+		assertTrue(object.reset.await(10, TimeUnit.SECONDS));
+		assertEquals("object-pool-return", object.resetBy);
+
+		// The return thread never takes objects, so it passes them to the depot
+		MpmcArrayQueue<PooledObject<?>> depot = ObjectPool.instance().depot(Handed.class);
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (depot.size() == 0 && System.nanoTime() < deadline) {
+			Thread.yield();
+		}
+		assertSame(object, ObjectPool.get(Handed.class));
+	}
+
+	@Test
+	public void objectsReturnedOnAnotherThreadAreHandedOverThroughTheDepot() throws InterruptedException {
+		List<Passed> taken = new CopyOnWriteArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			taken.add(ObjectPool.get(Passed.class));
+		}
+		Thread releaser = new Thread(() -> taken.forEach(Passed::release));
+		releaser.start();
+		releaser.join();
+		assertEquals(taken.size(), ObjectPool.instance().depot(Passed.class).size());
+
+		Set<Passed> reused = new HashSet<>();
+		for (int i = 0; i < taken.size(); i++) {
+			reused.add(ObjectPool.get(Passed.class));
+		}
+		assertEquals(new HashSet<>(taken), reused);
+	}
+
+	@Test
+	public void takingThreadKeepsWhatItReturns() throws InterruptedException {
+		Kept kept = ObjectPool.get(Kept.class);
+		kept.release();
+		assertEquals(0, ObjectPool.instance().depot(Kept.class).size());
+
+		// Only in this thread's magazine, another thread creates its own
+		Kept[] other = new Kept[1];
+		Thread taker = new Thread(() -> other[0] = ObjectPool.get(Kept.class));
+		taker.start();
+		taker.join();
+		assertNotSame(kept, other[0]);
+		assertSame(kept, ObjectPool.get(Kept.class));
+	}
+}
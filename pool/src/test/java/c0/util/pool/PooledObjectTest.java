@@ -0,0 +1,51 @@
+package c0.util.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class PooledObjectTest {
+
+	// Relies on the interface's defaults
+	public static class Plain implements PooledObject<Plain> {
+		int resets;
+
+		@Override
+		public Plain init() {
+			return this;
+		}
+
+		@Override
+		public void reset() {
+			resets++;
+		}
+	}
+
+	@Test
+	public void defaultReleaseReturnsEachInstanceOnItsOwn() {
+		Plain first = ObjectPool.get(Plain.class);
+		Plain second = ObjectPool.get(Plain.class);
+		first.release();
+		assertEquals(1, first.resets);
+		assertEquals(0, second.resets);
+		second.release();
+		assertEquals(1, second.resets);
+
+		// Returned to this thread's magazine, the last one is taken first
+		assertSame(second, ObjectPool.get(Plain.class));
+		assertSame(first, ObjectPool.get(Plain.class));
+	}
+
+	@Test
+	public void defaultRetainFails() {
+		Plain plain = new Plain();
+		try {
+			plain.retain();
+			fail("Retained without a reference count");
+		} catch (UnsupportedOperationException expected) {
+		}
+		assertEquals(0, plain.resets);
+	}
+}